@@ -20,13 +20,27 @@
  */
 package de.flapdoodle.embed.mongo.client;
 
+import de.flapdoodle.embed.mongo.commands.ImmutableMongodArguments;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.packageresolver.NumericVersion;
+import de.flapdoodle.embed.process.distribution.Version;
 import org.immutables.value.Value;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
 import java.util.Collections;
 import java.util.List;
 
 @Value.Immutable
 public abstract class AuthenticationSetup {
+	// minimum for scramIterationCount and scramSHA256IterationCount
+	private static final int MIN_SCRAM_ITERATION_COUNT = 5000;
+	private static final int PASSWORD_DIGEST_ITERATIONS = 10000;
+
 	@Value.Parameter
 	protected abstract UsernamePassword admin();
 
@@ -35,6 +49,97 @@ public abstract class AuthenticationSetup {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * lowers the scram iteration counts to the allowed minimum of 5000 (defaults are 10000 for SCRAM-SHA-1
+	 * and 15000 for SCRAM-SHA-256), saves a few milliseconds for each authentication, only for tests
+	 * <p>
+	 * most of the setup time is saved by {@link ClientActions#authenticationTemplate}, which creates users
+	 * and roles only once
+	 */
+	@Value.Default
+	public boolean testProfile() {
+		return false;
+	}
+
+	/**
+	 * enables auth and sets the scram iteration counts of the test profile
+	 */
+	@Value.Auxiliary
+	public MongodArguments applyTo(MongodArguments arguments, Version version) {
+		ImmutableMongodArguments.Builder builder = MongodArguments.builder().from(arguments)
+			.auth(true);
+		if (testProfile()) {
+			NumericVersion numericVersion = NumericVersion.of(version.asInDownloadPath());
+			if (numericVersion.isNewerOrEqual(3, 0, 0)) {
+				builder.putParams("scramIterationCount", "" + MIN_SCRAM_ITERATION_COUNT);
+			}
+			if (numericVersion.isNewerOrEqual(4, 0, 0)) {
+				builder.putParams("scramSHA256IterationCount", "" + MIN_SCRAM_ITERATION_COUNT);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * stable hash of all users and roles, passwords are only part of it as salted pbkdf2 digest
+	 */
+	@Value.Auxiliary
+	public String hash() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, "testProfile", "" + testProfile());
+			update(digest, "admin", admin().name(), passwordDigest("admin", admin()));
+			for (Entry entry : entries()) {
+				if (entry instanceof Role) {
+					Role role = (Role) entry;
+					update(digest, "role", role.database(), role.collection(), role.name());
+					update(digest, role.actions().toArray(new String[0]));
+				} else if (entry instanceof User) {
+					User user = (User) entry;
+					update(digest, "user", user.database(), user.user().name(), passwordDigest(user.database(), user.user()));
+					update(digest, user.roles().toArray(new String[0]));
+				} else {
+					throw new IllegalArgumentException("not supported: " + entry);
+				}
+			}
+			return hex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String passwordDigest(String database, UsernamePassword user) {
+		byte[] salt = ("embedmongo:" + database + ":" + user.name()).getBytes(StandardCharsets.UTF_8);
+		PBEKeySpec spec = new PBEKeySpec(user.password(), salt, PASSWORD_DIGEST_ITERATIONS, 256);
+		try {
+			return hex(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded());
+		}
+		catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+			throw new IllegalStateException(e);
+		}
+		finally {
+			spec.clearPassword();
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static void update(MessageDigest digest, String... values) {
+		digest.update(("" + values.length).getBytes(StandardCharsets.UTF_8));
+		for (String value : values) {
+			digest.update((byte) 0);
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update((byte) 1);
+	}
+
 	public interface Entry {
 
 	}
@@ -20,14 +20,18 @@
  */
 package de.flapdoodle.embed.mongo.client;
 
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
 import de.flapdoodle.embed.mongo.commands.ServerAddress;
 import de.flapdoodle.embed.mongo.config.Storage;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
 import de.flapdoodle.embed.mongo.packageresolver.Feature;
+import de.flapdoodle.embed.mongo.transitions.DatabaseDirTemplate;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
 import de.flapdoodle.embed.mongo.transitions.RunningMongoProcess;
 import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
 import de.flapdoodle.reverse.Listener;
 import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.transitions.Start;
 import de.flapdoodle.types.Try;
 import org.bson.Document;
 import org.slf4j.Logger;
@@ -35,13 +39,18 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public abstract class ClientActions {
 	private static Logger logger = LoggerFactory.getLogger(ClientActions.class);
 
+	private static final Set<String> SYSTEM_DATABASES = new HashSet<>(Arrays.asList("admin", "config", "local"));
+
 	private ClientActions() {
 		// no instance
 	}
@@ -49,36 +58,86 @@ public abstract class ClientActions {
 	public static Listener setupAuthentication(ExecuteMongoClientAction<?> executeAction, String databaseName, AuthenticationSetup setup) {
 		Listener.TypedListener.Builder typedBuilder = Listener.typedBuilder();
 
-		StateID<RunningMongodProcess> expectedState = StateID.of(RunningMongodProcess.class);
+		typedBuilder.onStateReached(StateID.of(RunningMongodProcess.class), createUsersAndRoles(executeAction, databaseName, setup));
+
+		typedBuilder.onStateTearDown(StateID.of(RunningMongodProcess.class), authenticatedShutdown(executeAction, setup.admin()));
+
+		return typedBuilder.build();
+	}
+
+	/**
+	 * shutdown with admin credentials on tear down, needed for mongod started with a database dir from {@link #authenticationTemplate}
+	 */
+	public static Listener authenticatedShutdown(ExecuteMongoClientAction<?> executeAction, AuthenticationSetup setup) {
+		return Listener.typedBuilder()
+			.onStateTearDown(StateID.of(RunningMongodProcess.class), authenticatedShutdown(executeAction, setup.admin()))
+			.build();
+	}
+
+	/**
+	 * database dir template with all users and roles of setup already created, one for each version, database name and setup;
+	 * use {@link AuthenticationSetup#applyTo} for the mongod arguments and {@link #authenticatedShutdown} to stop mongod
+	 */
+	public static DatabaseDirTemplate authenticationTemplate(
+		ExecuteMongoClientAction<?> executeAction,
+		String databaseName,
+		AuthenticationSetup setup,
+		IFeatureAwareVersion version
+	) {
+		Mongod mongod = Mongod.builder()
+			.mongodArguments(Start.to(MongodArguments.class).initializedWith(setup.applyTo(MongodArguments.defaults(), version)))
+			.build();
+
+		return DatabaseDirTemplate.builder()
+			.name("authentication-" + databaseName)
+			.fingerprint(setup.hash())
+			.populate(createUsersAndRoles(executeAction, databaseName, setup)
+				// stop with credentials, the template is copied after a clean shutdown
+				.andThen(authenticatedShutdown(executeAction, setup.admin())))
+			.mongod(mongod)
+			.build();
+	}
 
+	private static Consumer<RunningMongodProcess> authenticatedShutdown(ExecuteMongoClientAction<?> executeAction, UsernamePassword admin) {
+		return executeClientActions(executeAction, shutdown(admin.name(), admin.password()))
+			.andThen(RunningMongoProcess::shutDownCommandAlreadyExecuted);
+	}
+
+	private static Consumer<RunningMongodProcess> createUsersAndRoles(ExecuteMongoClientAction<?> executeAction, String databaseName, AuthenticationSetup setup) {
 		UsernamePassword admin = setup.admin();
 
 		// client action without credentials
 		MongoClientAction createAdminUser = MongoClientAction.runCommand("admin",
 			MongoClientAction.createUser(admin.name(), admin.passwordAsString(), Arrays.asList("root")));
 
-		List<MongoClientAction> setupRoles;
+		Function<RunningMongodProcess, CompletionStage<Void>> setupRoles;
 
 		if (setup.entries().isEmpty()) {
-			setupRoles = Arrays.asList(
+			setupRoles = executeClientActionsAsync(executeAction, Arrays.asList(
 				MongoClientAction.createUser(databaseName, admin.name(), admin.password(), "readWrite")
 					.withCredentials(MongoClientAction.credentials("admin", admin.name(), admin.password())),
 				// test list collections to fail fast if something went wrong
 				MongoClientAction.runCommand(databaseName, MongoClientAction.listCollections())
 					.withCredentials(MongoClientAction.credentials(databaseName, admin.name(), admin.password()))
-			);
+			));
 		} else {
 			MongoClientAction.Credentials adminCredentials = MongoClientAction.credentials("admin", admin.name(), admin.password());
 
-			setupRoles = setup.entries()
-				.stream().map(entry -> {
-					if (entry instanceof AuthenticationSetup.Role) {
-						AuthenticationSetup.Role role = (AuthenticationSetup.Role) entry;
-						return MongoClientAction.runCommand(role.database(),
-								MongoClientAction.createRole(role.name(),
-									MongoClientAction.privilege(role.database(), role.collection(), role.actions())))
-							.withCredentials(adminCredentials);
-					}
+			// roles do not depend on each other, users only on roles
+			List<MongoClientAction> createRoles = setup.entries().stream()
+				.filter(entry -> entry instanceof AuthenticationSetup.Role)
+				.map(entry -> {
+					AuthenticationSetup.Role role = (AuthenticationSetup.Role) entry;
+					return MongoClientAction.runCommand(role.database(),
+							MongoClientAction.createRole(role.name(),
+								MongoClientAction.privilege(role.database(), role.collection(), role.actions())))
+						.withCredentials(adminCredentials);
+				})
+				.collect(Collectors.toList());
+
+			List<MongoClientAction> createUsers = setup.entries().stream()
+				.filter(entry -> !(entry instanceof AuthenticationSetup.Role))
+				.map(entry -> {
 					if (entry instanceof AuthenticationSetup.User) {
 						AuthenticationSetup.User user = (AuthenticationSetup.User) entry;
 						return MongoClientAction.runCommand(user.database(),
@@ -88,17 +147,12 @@ public abstract class ClientActions {
 					throw new IllegalArgumentException("not supported: " + entry);
 				})
 				.collect(Collectors.toList());
-		}
 
-		typedBuilder.onStateReached(expectedState,
-			executeClientActions(executeAction, createAdminUser)
-				.andThen(executeClientActions(executeAction, setupRoles)));
-
-		typedBuilder.onStateTearDown(StateID.of(RunningMongodProcess.class),
-			executeClientActions(executeAction, shutdown(admin.name(), admin.password()))
-				.andThen(RunningMongoProcess::shutDownCommandAlreadyExecuted));
+			setupRoles = andThen(executeBatchAsync(executeAction, createRoles), executeBatchAsync(executeAction, createUsers));
+		}
 
-		return typedBuilder.build();
+		// one chain without blocking between commands, only the listener waits for the result
+		return await(andThen(executeClientActionsAsync(executeAction, Collections.singletonList(createAdminUser)), setupRoles));
 	}
 
 	public static Listener initReplicaSet(
@@ -161,19 +215,64 @@ public abstract class ClientActions {
 		return builder.build();
 	}
 
+	public static Consumer<RunningMongodProcess> dropDatabases(ExecuteMongoClientAction<?> executeAction) {
+		return runningMongodProcess -> {
+			List<String> databaseNames = new ArrayList<>();
+			executeAction.execute(runningMongodProcess, MongoClientAction.runCommand("admin", MongoClientAction.listDatabases())
+				.withOnResult(result -> result.getList("databases", Document.class)
+					.forEach(database -> databaseNames.add(database.getString("name")))));
+
+			List<MongoClientAction> dropDatabases = databaseNames.stream()
+				.filter(name -> !SYSTEM_DATABASES.contains(name))
+				.map(name -> MongoClientAction.runCommand(name, MongoClientAction.dropDatabase()))
+				.collect(Collectors.toList());
+
+			executeBatch(executeAction, dropDatabases).accept(runningMongodProcess);
+		};
+	}
+
 	private static Consumer<RunningMongodProcess> executeClientActions(ExecuteMongoClientAction<?> executeAction, MongoClientAction... actions) {
-		return runningMongodProcess -> executeClientActions(executeAction, runningMongodProcess, Arrays.asList(actions));
+		return executeClientActions(executeAction, Arrays.asList(actions));
 	}
 
 	private static Consumer<RunningMongodProcess> executeClientActions(ExecuteMongoClientAction<?> executeAction, List<? extends MongoClientAction> actions) {
-		return runningMongodProcess -> executeClientActions(executeAction, runningMongodProcess, actions);
+		return await(executeClientActionsAsync(executeAction, actions));
+	}
+
+	private static Consumer<RunningMongodProcess> executeBatch(ExecuteMongoClientAction<?> executeAction, List<? extends MongoClientAction> actions) {
+		return await(executeBatchAsync(executeAction, actions));
 	}
 
-	private static void executeClientActions(ExecuteMongoClientAction<?> executeAction, RunningMongodProcess runningMongodProcess,
+	private static Function<RunningMongodProcess, CompletionStage<Void>> executeClientActionsAsync(ExecuteMongoClientAction<?> executeAction,
 		List<? extends MongoClientAction> actions) {
-		for (MongoClientAction action : actions) {
-			executeAction.execute(runningMongodProcess, action);
-		}
+		return runningMongodProcess -> {
+			CompletionStage<Void> chain = CompletableFuture.completedFuture(null);
+			for (MongoClientAction action : actions) {
+				chain = chain.thenCompose(ignore -> executeAction.executeAsync(runningMongodProcess, action)
+					.thenApply(result -> null));
+			}
+			return chain;
+		};
+	}
+
+	private static Function<RunningMongodProcess, CompletionStage<Void>> executeBatchAsync(ExecuteMongoClientAction<?> executeAction,
+		List<? extends MongoClientAction> actions) {
+		MongoClientAction.Batch batch = MongoClientAction.batch(actions);
+		return runningMongodProcess -> batch.actions().isEmpty()
+			? CompletableFuture.completedFuture(null)
+			: executeAction.executeAsync(runningMongodProcess, batch);
+	}
+
+	private static Function<RunningMongodProcess, CompletionStage<Void>> andThen(
+		Function<RunningMongodProcess, CompletionStage<Void>> first,
+		Function<RunningMongodProcess, CompletionStage<Void>> second
+	) {
+		return runningMongodProcess -> first.apply(runningMongodProcess)
+			.thenCompose(ignore -> second.apply(runningMongodProcess));
+	}
+
+	private static Consumer<RunningMongodProcess> await(Function<RunningMongodProcess, CompletionStage<Void>> chain) {
+		return runningMongodProcess -> ExecuteMongoClientAction.join(chain.apply(runningMongodProcess));
 	}
 
 	private static MongoClientAction shutdown(String username, char[] password) {
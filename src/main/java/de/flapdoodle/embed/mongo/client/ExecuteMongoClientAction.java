@@ -27,22 +27,144 @@ import org.bson.Document;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 public abstract class ExecuteMongoClientAction<C extends Closeable> {
+	// the driver needs jnr-unixsocket to connect through a unix domain socket
+	private static final boolean UNIX_SOCKET_SUPPORTED = isClassPresent("jnr.unixsocket.UnixSocketAddress");
+
+	private final ConcurrentMap<ClientKey, C> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * clients are cached for each server address and credentials and closed before the process is stopped
+	 */
 	public void execute(RunningMongodProcess runningMongodProcess, MongoClientAction action) {
-		try (C client = action.credentials()
-			.map(c -> client(runningMongodProcess.getServerAddress(),
-				MongoCredential.createCredential(c.username(), c.database(), c.password().toCharArray())))
-			.orElseGet(() -> client(runningMongodProcess.getServerAddress()))) {
+		join(executeAsync(runningMongodProcess, action));
+	}
 
-			action.onResult()
-				.accept(resultOfAction(client, action.action()));
-		}
-		catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * runs all actions of a batch (actions with the same credentials share one client) and
+	 * calls onResult or onError for each, all failures are collected in one exception
+	 */
+	public void execute(RunningMongodProcess runningMongodProcess, MongoClientAction.Batch batch) {
+		join(executeAsync(runningMongodProcess, batch));
+	}
+
+	/**
+	 * completes after onResult or onError was called, with null if onError did not throw
+	 */
+	public CompletionStage<Document> executeAsync(RunningMongodProcess runningMongodProcess, MongoClientAction action) {
+		CompletionStage<Document> result;
+		try {
+			result = resultOfActionAsync(cachedClient(runningMongodProcess, action.credentials()), action.action());
 		}
 		catch (RuntimeException rx) {
-			action.onError().accept(rx);
+			CompletableFuture<Document> failed = new CompletableFuture<>();
+			failed.completeExceptionally(rx);
+			result = failed;
+		}
+		return handleResult(action, result);
+	}
+
+	/**
+	 * all actions are started before the first result is awaited, if the client supports it
+	 */
+	public CompletionStage<Void> executeAsync(RunningMongodProcess runningMongodProcess, MongoClientAction.Batch batch) {
+		List<MongoClientAction> actions = batch.actions();
+		List<CompletableFuture<Throwable>> failures = new ArrayList<>();
+		for (MongoClientAction action : actions) {
+			failures.add(executeAsync(runningMongodProcess, action)
+				.handle((ignore, ex) -> ex)
+				.toCompletableFuture());
+		}
+
+		return CompletableFuture.allOf(failures.toArray(new CompletableFuture[0]))
+			.thenApply(ignore -> {
+				List<Throwable> failed = failures.stream()
+					.map(CompletableFuture::join)
+					.filter(Objects::nonNull)
+					.map(ExecuteMongoClientAction::unwrap)
+					.collect(Collectors.toList());
+
+				if (!failed.isEmpty()) {
+					RuntimeException exception = new RuntimeException(failed.size() + " of " + actions.size() + " actions failed", failed.get(0));
+					failed.subList(1, failed.size()).forEach(exception::addSuppressed);
+					throw exception;
+				}
+				return null;
+			});
+	}
+
+	private static CompletionStage<Document> handleResult(MongoClientAction action, CompletionStage<Document> result) {
+		return result.handle((document, ex) -> {
+			if (ex == null) {
+				try {
+					action.onResult().accept(document);
+					return document;
+				}
+				catch (RuntimeException rx) {
+					action.onError().accept(rx);
+					return null;
+				}
+			}
+			Throwable cause = unwrap(ex);
+			action.onError().accept(cause instanceof RuntimeException
+				? (RuntimeException) cause
+				: new RuntimeException(cause));
+			return null;
+		});
+	}
+
+	static <T> T join(CompletionStage<T> stage) {
+		try {
+			return stage.toCompletableFuture().join();
+		}
+		catch (CompletionException cx) {
+			Throwable cause = unwrap(cx);
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private static Throwable unwrap(Throwable ex) {
+		Throwable current = ex;
+		while (current instanceof CompletionException && current.getCause() != null) {
+			current = current.getCause();
+		}
+		return current;
+	}
+
+	private C cachedClient(RunningMongodProcess runningMongodProcess, Optional<MongoClientAction.Credentials> credentials) {
+		ServerAddress serverAddress = runningMongodProcess.getServerAddress();
+		ClientKey key = new ClientKey(serverAddress, credentials);
+		return clients.computeIfAbsent(key, it -> {
+			C client = credentials
+				.map(c -> client(serverAddress, MongoCredential.createCredential(c.username(), c.database(), c.password().toCharArray())))
+				.orElseGet(() -> client(serverAddress));
+			runningMongodProcess.closeOnStop(() -> closeClient(key, client));
+			return client;
+		});
+	}
+
+	private void closeClient(ClientKey key, C client) throws IOException {
+		if (clients.remove(key, client)) {
+			client.close();
 		}
 	}
 
@@ -51,4 +173,70 @@ public abstract class ExecuteMongoClientAction<C extends Closeable> {
 	protected abstract C client(ServerAddress serverAddress, MongoCredential credential);
 
 	protected abstract Document resultOfAction(C client, MongoClientAction.Action action);
+
+	/**
+	 * blocking by default, override if the client has an async api
+	 */
+	protected CompletionStage<Document> resultOfActionAsync(C client, MongoClientAction.Action action) {
+		CompletableFuture<Document> result = new CompletableFuture<>();
+		try {
+			result.complete(resultOfAction(client, action));
+		}
+		catch (RuntimeException rx) {
+			result.completeExceptionally(rx);
+		}
+		return result;
+	}
+
+	/**
+	 * uses the unix domain socket if there is one and the driver can use it
+	 */
+	protected static String connectionString(ServerAddress serverAddress) {
+		if (UNIX_SOCKET_SUPPORTED && serverAddress.getUnixSocket().isPresent()) {
+			try {
+				return "mongodb://" + URLEncoder.encode(serverAddress.getUnixSocket().get(), "UTF-8");
+			}
+			catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return "mongodb://" + serverAddress;
+	}
+
+	private static boolean isClassPresent(String className) {
+		try {
+			Class.forName(className, false, ExecuteMongoClientAction.class.getClassLoader());
+			return true;
+		}
+		catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	private static final class ClientKey {
+		private final ServerAddress serverAddress;
+		private final Optional<MongoClientAction.Credentials> credentials;
+
+		private ClientKey(ServerAddress serverAddress, Optional<MongoClientAction.Credentials> credentials) {
+			this.serverAddress = serverAddress;
+			this.credentials = credentials;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (other == null || getClass() != other.getClass()) {
+				return false;
+			}
+			ClientKey that = (ClientKey) other;
+			return serverAddress.equals(that.serverAddress) && credentials.equals(that.credentials);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serverAddress, credentials);
+		}
+	}
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import org.bson.Document;
+import org.immutables.value.Value;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * a file which is imported into a collection by {@link FixtureLoader}
+ */
+@Value.Immutable
+public abstract class Fixture {
+
+	public enum Format {
+		/**
+		 * documents separated by whitespace or one json array of documents (mongoimport json, mongoexport output)
+		 */
+		JSON,
+		/**
+		 * header line with field names, dotted names create embedded documents
+		 */
+		CSV,
+		/**
+		 * concatenated bson documents (mongodump output)
+		 */
+		BSON
+	}
+
+	@Value.Parameter
+	public abstract String database();
+
+	@Value.Parameter
+	public abstract String collection();
+
+	@Value.Parameter
+	public abstract Path file();
+
+	@Value.Default
+	public Format format() {
+		String fileName = file().getFileName().toString().toLowerCase(Locale.ROOT);
+		if (fileName.endsWith(".csv")) {
+			return Format.CSV;
+		}
+		if (fileName.endsWith(".bson")) {
+			return Format.BSON;
+		}
+		return Format.JSON;
+	}
+
+	@Value.Default
+	public boolean dropCollection() {
+		return false;
+	}
+
+	/**
+	 * index keys, created after all documents of the collection are inserted
+	 */
+	public abstract List<Document> indexes();
+
+	public static ImmutableFixture of(String database, String collection, Path file) {
+		return ImmutableFixture.of(database, collection, file);
+	}
+
+	public static ImmutableFixture.Builder builder() {
+		return ImmutableFixture.builder();
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.InsertManyOptions;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.embed.mongo.util.Threads;
+import org.bson.Document;
+import org.immutables.value.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * imports fixtures with the java driver instead of spawning one mongoimport per file:
+ * files are streamed, documents are sent as unordered insertMany batches from a pool of threads
+ * and indexes are created after all documents of a collection are inserted
+ * <p>
+ * the first failed batch stops the whole load: no more batches are read or sent and no indexes are created
+ */
+@Value.Immutable
+public abstract class FixtureLoader {
+
+	public abstract List<Fixture> fixtures();
+
+	@Value.Default
+	public int batchSize() {
+		return 1000;
+	}
+
+	@Value.Default
+	public int parallelism() {
+		return Math.max(2, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Value.Check
+	protected void check() {
+		if (batchSize() < 1) throw new IllegalArgumentException("batchSize < 1: " + batchSize());
+		if (parallelism() < 1) throw new IllegalArgumentException("parallelism < 1: " + parallelism());
+	}
+
+	/**
+	 * @return number of inserted documents
+	 */
+	public long load(MongoClient client) {
+		Map<String, List<Fixture>> fixturesByCollection = fixtures().stream()
+			.collect(Collectors.groupingBy(it -> it.database() + "." + it.collection(), LinkedHashMap::new, Collectors.toList()));
+
+		ExecutorService readers = Executors.newFixedThreadPool(Math.min(parallelism(), Math.max(1, fixturesByCollection.size())), Threads.daemonThreads("fixture-reader"));
+		ExecutorService writers = Executors.newFixedThreadPool(parallelism(), Threads.daemonThreads("fixture-writer"));
+		Semaphore batchesInFlight = new Semaphore(parallelism() * 2);
+		AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+		try {
+			List<CompletableFuture<Long>> collections = fixturesByCollection.values().stream()
+				.map(fixtures -> CompletableFuture.supplyAsync(() -> {
+					try {
+						return loadCollection(client, fixtures, writers, batchesInFlight, firstFailure);
+					}
+					catch (RuntimeException rx) {
+						throw failed(firstFailure, rx);
+					}
+				}, readers))
+				.collect(Collectors.toList());
+
+			long inserted = 0;
+			List<Throwable> failures = new ArrayList<>();
+			for (CompletableFuture<Long> collection : collections) {
+				try {
+					inserted += collection.join();
+				}
+				catch (CompletionException | CancellationException ex) {
+					Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+					if (!(cause instanceof CancellationException)) {
+						failures.add(cause);
+					}
+				}
+			}
+			// a collection may only report one of its skipped batches
+			Throwable first = firstFailure.get();
+			if (first != null && !failures.contains(first)) {
+				failures.add(0, first);
+			}
+			if (!failures.isEmpty()) {
+				RuntimeException exception = new RuntimeException(failures.size() + " of " + collections.size() + " collections failed", failures.get(0));
+				failures.stream().skip(1).forEach(exception::addSuppressed);
+				throw exception;
+			}
+			return inserted;
+		}
+		finally {
+			readers.shutdownNow();
+			writers.shutdownNow();
+		}
+	}
+
+	/**
+	 * usable as {@link de.flapdoodle.embed.mongo.transitions.DatabaseDirTemplate#populate()}
+	 */
+	public Consumer<RunningMongodProcess> loadInto(MongoClientSettings clientSettings) {
+		return running -> {
+			try (MongoClient client = MongoClients.create(MongoClientSettings.builder(clientSettings)
+				.applyConnectionString(new ConnectionString(ExecuteMongoClientAction.connectionString(running.getServerAddress())))
+				.build())) {
+				load(client);
+			}
+		};
+	}
+
+	public Consumer<RunningMongodProcess> loadInto() {
+		return loadInto(MongoClientSettings.builder().build());
+	}
+
+	private long loadCollection(MongoClient client, List<Fixture> fixtures, ExecutorService writers, Semaphore batchesInFlight,
+		AtomicReference<Throwable> firstFailure) {
+		Fixture first = fixtures.get(0);
+		MongoCollection<Document> collection = client.getDatabase(first.database()).getCollection(first.collection());
+		if (fixtures.stream().anyMatch(Fixture::dropCollection)) {
+			collection.drop();
+		}
+
+		InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+		List<CompletableFuture<Integer>> batches = new ArrayList<>();
+		try {
+			for (Fixture fixture : fixtures) {
+				try (FixtureReader reader = FixtureReader.open(fixture)) {
+					List<Document> batch = new ArrayList<>(batchSize());
+					while (reader.hasNext()) {
+						batch.add(reader.next());
+						if (batch.size() == batchSize()) {
+							checkNotFailed(firstFailure);
+							batches.add(insert(collection, batch, unordered, writers, batchesInFlight, firstFailure));
+							batch = new ArrayList<>(batchSize());
+						}
+					}
+					if (!batch.isEmpty()) {
+						checkNotFailed(firstFailure);
+						batches.add(insert(collection, batch, unordered, writers, batchesInFlight, firstFailure));
+					}
+				}
+				catch (IOException iox) {
+					throw new RuntimeException("could not read " + fixture.file(), iox);
+				}
+			}
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted loading " + first.database() + "." + first.collection(), ix);
+		}
+
+		long inserted = CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+			.thenApply(ignore -> batches.stream().mapToLong(CompletableFuture::join).sum())
+			.join();
+
+		checkNotFailed(firstFailure);
+		List<IndexModel> indexes = fixtures.stream()
+			.flatMap(it -> it.indexes().stream())
+			.distinct()
+			.map(IndexModel::new)
+			.collect(Collectors.toList());
+		if (!indexes.isEmpty()) {
+			collection.createIndexes(indexes);
+		}
+		return inserted;
+	}
+
+	private static CompletableFuture<Integer> insert(MongoCollection<Document> collection, List<Document> batch, InsertManyOptions options,
+		ExecutorService writers, Semaphore batchesInFlight, AtomicReference<Throwable> firstFailure) throws InterruptedException {
+		batchesInFlight.acquire();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					checkNotFailed(firstFailure);
+					collection.insertMany(batch, options);
+					return batch.size();
+				}
+				catch (RuntimeException rx) {
+					throw failed(firstFailure, rx);
+				}
+				finally {
+					batchesInFlight.release();
+				}
+			}, writers);
+		}
+		catch (RuntimeException rx) {
+			batchesInFlight.release();
+			throw rx;
+		}
+	}
+
+	private static void checkNotFailed(AtomicReference<Throwable> firstFailure) {
+		if (firstFailure.get() != null) {
+			throw new CancellationException("skipped, loading fixtures failed");
+		}
+	}
+
+	private static RuntimeException failed(AtomicReference<Throwable> firstFailure, RuntimeException exception) {
+		if (!(exception instanceof CancellationException)) {
+			firstFailure.compareAndSet(null, exception);
+		}
+		return exception;
+	}
+
+	public static ImmutableFixtureLoader.Builder builder() {
+		return ImmutableFixtureLoader.builder();
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * streams documents one by one, the file is never read completely
+ */
+abstract class FixtureReader implements Closeable {
+
+	private static final DocumentCodec CODEC = new DocumentCodec();
+	private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+	private Document next;
+
+	/**
+	 * @return next document or null at the end
+	 */
+	protected abstract Document read() throws IOException;
+
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = read();
+			}
+			catch (IOException iox) {
+				throw new UncheckedIOException(iox);
+			}
+		}
+		return next != null;
+	}
+
+	public Document next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Document current = next;
+		next = null;
+		return current;
+	}
+
+	static FixtureReader open(Fixture fixture) throws IOException {
+		switch (fixture.format()) {
+			case JSON:
+				return json(Files.newBufferedReader(fixture.file(), StandardCharsets.UTF_8));
+			case CSV:
+				return csv(Files.newBufferedReader(fixture.file(), StandardCharsets.UTF_8));
+			case BSON:
+				return bson(new BufferedInputStream(Files.newInputStream(fixture.file())));
+		}
+		throw new IllegalArgumentException("not supported: " + fixture.format());
+	}
+
+	static FixtureReader json(Reader source) throws IOException {
+		PushbackReader reader = new PushbackReader(source, 1);
+		boolean isArray = firstNonWhitespace(reader) == '[';
+		JsonReader jsonReader = new JsonReader(reader);
+		if (isArray) {
+			jsonReader.readStartArray();
+		}
+		return new FixtureReader() {
+			private boolean done = false;
+
+			@Override
+			protected Document read() {
+				if (done || jsonReader.readBsonType() == BsonType.END_OF_DOCUMENT) {
+					done = true;
+					return null;
+				}
+				return CODEC.decode(jsonReader, DECODER_CONTEXT);
+			}
+
+			@Override
+			public void close() throws IOException {
+				jsonReader.close();
+				reader.close();
+			}
+		};
+	}
+
+	static FixtureReader csv(Reader source) throws IOException {
+		BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+		Optional<List<String>> header = csvLine(reader);
+		List<String[]> fields = new ArrayList<>();
+		header.ifPresent(names -> names.forEach(name -> fields.add(name.split("\\."))));
+
+		return new FixtureReader() {
+			@Override
+			protected Document read() throws IOException {
+				Optional<List<String>> line = csvLine(reader);
+				while (line.isPresent() && line.get().size() == 1 && line.get().get(0).isEmpty()) {
+					line = csvLine(reader);
+				}
+				if (!line.isPresent()) {
+					return null;
+				}
+				Document document = new Document();
+				List<String> values = line.get();
+				for (int i = 0; i < Math.min(values.size(), fields.size()); i++) {
+					put(document, fields.get(i), csvValue(values.get(i)));
+				}
+				return document;
+			}
+
+			@Override
+			public void close() throws IOException {
+				reader.close();
+			}
+		};
+	}
+
+	static FixtureReader bson(InputStream source) {
+		DataInputStream input = new DataInputStream(source);
+		return new FixtureReader() {
+			@Override
+			protected Document read() throws IOException {
+				byte[] sizeBytes = new byte[4];
+				int first = input.read();
+				if (first == -1) {
+					return null;
+				}
+				sizeBytes[0] = (byte) first;
+				input.readFully(sizeBytes, 1, 3);
+				int size = ByteBuffer.wrap(sizeBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+				if (size < 5) {
+					throw new IOException("invalid document size: " + size);
+				}
+				byte[] document = new byte[size];
+				System.arraycopy(sizeBytes, 0, document, 0, 4);
+				try {
+					input.readFully(document, 4, size - 4);
+				}
+				catch (EOFException eof) {
+					throw new IOException("truncated document, expected " + size + " bytes", eof);
+				}
+				try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(document))) {
+					return CODEC.decode(reader, DECODER_CONTEXT);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				input.close();
+			}
+		};
+	}
+
+	private static int firstNonWhitespace(PushbackReader reader) throws IOException {
+		int c;
+		do {
+			c = reader.read();
+		}
+		while (c != -1 && Character.isWhitespace(c));
+		if (c != -1) {
+			reader.unread(c);
+		}
+		return c;
+	}
+
+	private static final Pattern INTEGER = Pattern.compile("-?\\d{1,18}");
+	private static final Pattern DECIMAL = Pattern.compile("-?(\\d+\\.\\d*|\\.\\d+|\\d+)([eE][-+]?\\d+)?");
+
+	private static Object csvValue(String value) {
+		if (INTEGER.matcher(value).matches()) {
+			long asLong = Long.parseLong(value);
+			return asLong >= Integer.MIN_VALUE && asLong <= Integer.MAX_VALUE ? (Object) (int) asLong : (Object) asLong;
+		}
+		if (DECIMAL.matcher(value).matches()) {
+			return Double.parseDouble(value);
+		}
+		return value;
+	}
+
+	private static void put(Document document, String[] path, Object value) {
+		Document current = document;
+		for (int i = 0; i < path.length - 1; i++) {
+			Object child = current.get(path[i]);
+			if (!(child instanceof Document)) {
+				child = new Document();
+				current.put(path[i], child);
+			}
+			current = (Document) child;
+		}
+		current.put(path[path.length - 1], value);
+	}
+
+	/**
+	 * rfc 4180, quoted values may contain separators, quotes and line breaks
+	 */
+	static Optional<List<String>> csvLine(BufferedReader reader) throws IOException {
+		int c = reader.read();
+		if (c == -1) {
+			return Optional.empty();
+		}
+		List<String> values = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		while (c != -1) {
+			if (quoted) {
+				if (c == '"') {
+					reader.mark(1);
+					int following = reader.read();
+					if (following == '"') {
+						value.append('"');
+					} else {
+						quoted = false;
+						if (following != -1) {
+							reader.reset();
+						}
+					}
+				} else {
+					value.append((char) c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				values.add(value.toString());
+				value.setLength(0);
+			} else if (c == '\n') {
+				break;
+			} else if (c != '\r') {
+				value.append((char) c);
+			}
+			c = reader.read();
+		}
+		values.add(value.toString());
+		return Optional.of(values);
+	}
+}
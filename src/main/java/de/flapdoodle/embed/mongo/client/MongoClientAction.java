@@ -65,6 +65,19 @@ abstract class MongoClientAction {
 		public abstract Document command();
 	}
 
+	/**
+	 * actions which do not depend on each other, may run concurrently
+	 */
+	@Value.Immutable
+	static abstract class Batch {
+		@Value.Parameter
+		public abstract List<MongoClientAction> actions();
+	}
+
+	static Batch batch(List<? extends MongoClientAction> actions) {
+		return ImmutableBatch.of(actions);
+	}
+
 	static ImmutableMongoClientAction of(MongoClientAction.Action action) {
 		return ImmutableMongoClientAction.builder()
 			.action(action)
@@ -143,4 +156,12 @@ abstract class MongoClientAction {
 	static Document listCollections() {
 		return new Document("listCollections", 1);
 	}
+
+	static Document listDatabases() {
+		return new Document("listDatabases", 1);
+	}
+
+	static Document dropDatabase() {
+		return new Document("dropDatabase", 1);
+	}
 }
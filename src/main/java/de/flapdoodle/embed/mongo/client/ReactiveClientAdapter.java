@@ -32,6 +32,7 @@ import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 
 public class ReactiveClientAdapter extends ExecuteMongoClientAction<MongoClient> {
@@ -44,8 +45,20 @@ public class ReactiveClientAdapter extends ExecuteMongoClientAction<MongoClient>
 
 	@Override
 	protected Document resultOfAction(MongoClient client, MongoClientAction.Action action) {
+		return get(resultOf(client, action));
+	}
+
+	/**
+	 * does not block, the result is completed by the driver
+	 */
+	@Override
+	protected CompletionStage<Document> resultOfActionAsync(MongoClient client, MongoClientAction.Action action) {
+		return resultOf(client, action);
+	}
+
+	private static CompletableFuture<Document> resultOf(MongoClient client, MongoClientAction.Action action) {
 		if (action instanceof MongoClientAction.RunCommand) {
-			return get(client.getDatabase(action.database()).runCommand(((MongoClientAction.RunCommand) action).command()));
+			return first(client.getDatabase(action.database()).runCommand(((MongoClientAction.RunCommand) action).command()));
 		}
 		throw new IllegalArgumentException("Action not supported: "+action);
 	}
@@ -53,19 +66,19 @@ public class ReactiveClientAdapter extends ExecuteMongoClientAction<MongoClient>
 	@Override
 	protected MongoClient client(ServerAddress serverAddress) {
 		return MongoClients.create(MongoClientSettings.builder(clientSettings)
-			.applyConnectionString(new ConnectionString("mongodb://"+serverAddress))
+			.applyConnectionString(new ConnectionString(connectionString(serverAddress)))
 			.build());
 	}
 
 	@Override
 	protected MongoClient client(ServerAddress serverAddress, MongoCredential credential) {
 		return MongoClients.create(MongoClientSettings.builder(clientSettings)
-			.applyConnectionString(new ConnectionString("mongodb://"+serverAddress))
+			.applyConnectionString(new ConnectionString(connectionString(serverAddress)))
 			.credential(credential)
 			.build());
 	}
 
-	private static <T> T get(Publisher<T> publisher) {
+	private static <T> CompletableFuture<T> first(Publisher<T> publisher) {
 		CompletableFuture<T> result = new CompletableFuture<>();
 
 		publisher.subscribe(new Subscriber<T>() {
@@ -82,6 +95,10 @@ public class ReactiveClientAdapter extends ExecuteMongoClientAction<MongoClient>
 			}
 		});
 
+		return result;
+	}
+
+	private static <T> T get(CompletableFuture<T> result) {
 		try {
 			return result.get();
 		}
@@ -39,14 +39,14 @@ public class SyncClientAdapter extends ExecuteMongoClientAction<MongoClient> {
 	@Override
 	protected MongoClient client(ServerAddress serverAddress) {
 		return MongoClients.create(MongoClientSettings.builder(clientSettings)
-			.applyConnectionString(new ConnectionString("mongodb://" + serverAddress))
+			.applyConnectionString(new ConnectionString(connectionString(serverAddress)))
 			.build());
 	}
 
 	@Override
 	protected MongoClient client(ServerAddress serverAddress, MongoCredential credential) {
 		return MongoClients.create(MongoClientSettings.builder(clientSettings)
-			.applyConnectionString(new ConnectionString("mongodb://" + serverAddress))
+			.applyConnectionString(new ConnectionString(connectionString(serverAddress)))
 			.credential(credential)
 			.build());
 	}
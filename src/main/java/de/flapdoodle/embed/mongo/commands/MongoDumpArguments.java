@@ -51,6 +51,14 @@ public abstract class MongoDumpArguments implements MongoToolsArguments  {
 
 	public abstract Optional<String> archive();
 
+	/**
+	 * write the archive to stdout, see {@link de.flapdoodle.embed.mongo.transitions.RunningMongoDumpArchive}
+	 */
+	@Value.Default
+	public boolean archiveToStdout() {
+		return false;
+	}
+
 	@Value.Default
 	public boolean dumpDbUsersAndRoles() {
 		return false;
@@ -79,6 +87,13 @@ public abstract class MongoDumpArguments implements MongoToolsArguments  {
 
 	public abstract OptionalInt numberOfParallelCollections();
 
+	@Value.Check
+	protected void check() {
+		if (archiveToStdout() && archive().isPresent()) {
+			throw new IllegalArgumentException("archive and archiveToStdout are exclusive");
+		}
+	}
+
 	@Override
 	@Value.Auxiliary
 	public List<String> asArguments(ServerAddress serverAddress) {
@@ -109,6 +124,7 @@ public abstract class MongoDumpArguments implements MongoToolsArguments  {
 		builder.addIf(config.forceTableScan(),"--forceTableScan");
 
 		config.archive().ifPresent(it -> builder.add("--archive="+it));
+		builder.addIf(config.archiveToStdout(), "--archive");
 
 		builder.addIf(config.dumpDbUsersAndRoles(),"--dumpDbUsersAndRoles");
 
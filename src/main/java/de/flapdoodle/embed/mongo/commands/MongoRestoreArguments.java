@@ -41,6 +41,15 @@ public abstract class MongoRestoreArguments implements MongoToolsArguments {
 
 	public abstract OptionalLong oplogLimit();
 	public abstract Optional<String> archive();
+
+	/**
+	 * read the archive from stdin, see {@link de.flapdoodle.embed.mongo.transitions.MongoRestore}
+	 */
+	@Value.Default
+	public boolean archiveFromStdin() {
+		return false;
+	}
+
 	public abstract Optional<String> dir();
 
 	public abstract OptionalInt numberOfParallelCollections();
@@ -95,6 +104,13 @@ public abstract class MongoRestoreArguments implements MongoToolsArguments {
 		return false;
 	}
 
+	@Value.Check
+	protected void check() {
+		if (archiveFromStdin() && archive().isPresent()) {
+			throw new IllegalArgumentException("archive and archiveFromStdin are exclusive");
+		}
+	}
+
 	@Override
 	@Value.Auxiliary
 	public List<String> asArguments(ServerAddress serverAddress) {
@@ -124,6 +140,7 @@ public abstract class MongoRestoreArguments implements MongoToolsArguments {
 
 		config.oplogLimit().ifPresent(it -> ret.add("--oplogLimit", ""+it));
 		config.archive().ifPresent(it -> ret.add("--archive="+it));
+		ret.addIf(config.archiveFromStdin(), "--archive");
 
 		ret.addIf(config.restoreDbUsersAndRoles(), "--restoreDbUsersAndRoles");
 		ret.addIf("--dir", config.dir());
@@ -189,6 +189,7 @@ public abstract class MongodArguments {
 		if (bindIp.isPresent()) {
 			builder.add("--bind_ip", Objects.equals("localhost", bindIp.get()) && version.enabled(Feature.NO_BIND_IP_TO_LOCALHOST) ? "127.0.0.1" : bindIp.get());
 		}
+		net.getUnixSocket().ifPresent(socket -> builder.add("--unixSocketPrefix", socket.getParent().toString()));
 
 		if (config.replication().isPresent()) {
 			Storage replication = config.replication().get();
@@ -73,6 +73,7 @@ public abstract class MongosArguments {
 		ret.add("--port");
 		ret.add("" + net.getPort());
 		ret.addIf(net.isIpv6(), "--ipv6");
+		net.getUnixSocket().ifPresent(socket -> ret.add("--unixSocketPrefix", socket.getParent().toString()));
 
 		if (config.configDB().isPresent()) {
 			ret.add("--configdb");
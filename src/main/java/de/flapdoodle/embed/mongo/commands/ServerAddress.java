@@ -23,6 +23,7 @@ package de.flapdoodle.embed.mongo.commands;
 import org.immutables.value.Value;
 
 import java.net.InetAddress;
+import java.util.Optional;
 
 @Value.Immutable
 public abstract class ServerAddress {
@@ -36,6 +37,11 @@ public abstract class ServerAddress {
 		return defaultPort();
 	}
 
+	/**
+	 * path of a unix domain socket the server listens on too
+	 */
+	public abstract Optional<String> getUnixSocket();
+
 	@Override
 	@Value.Auxiliary
 	public String toString() {
@@ -20,27 +20,90 @@
  */
 package de.flapdoodle.embed.mongo.config;
 
+import de.flapdoodle.os.OSType;
+import de.flapdoodle.os.Platform;
 import org.immutables.value.Value;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.util.Optional;
 
 @Value.Immutable
 public abstract class Net {
 
+	private static final int MAX_UNIX_SOCKET_PATH_LENGTH = 100;
+
 	public abstract Optional<String> getBindIp();
 
 	public abstract int getPort();
 
 	public abstract boolean isIpv6();
 
+	/**
+	 * a server may be started on another port if this one is already in use,
+	 * only set for ports picked by {@link de.flapdoodle.embed.mongo.transitions.PortAllocator}
+	 */
+	@Value.Default
+	public boolean isPortReassignable() {
+		return false;
+	}
+
+	/**
+	 * listen on a unix domain socket too, placed in the process working dir if no directory is set (not on windows)
+	 */
+	@Value.Default
+	public boolean isUnixSocket() {
+		return false;
+	}
+
+	public abstract Optional<Path> getUnixSocketDirectory();
+
+	@Value.Auxiliary
+	public Optional<Path> getUnixSocket() {
+		return isUnixSocket()
+			? getUnixSocketDirectory().map(dir -> dir.toAbsolutePath().resolve("mongodb-" + getPort() + ".sock"))
+			: Optional.empty();
+	}
+
 	@Value.Auxiliary
 	public Net withPort(int port) {
 		return ImmutableNet.copyOf(this).withPort(port);
 	}
 
+	/**
+	 * port picked by an allocator, the server may be started on another port on a conflict
+	 */
+	@Value.Auxiliary
+	public Net withReassignablePort(int port) {
+		return ImmutableNet.copyOf(this).withPort(port).withIsPortReassignable(true);
+	}
+
+	/**
+	 * sets the socket directory if not set, disables the socket if unsupported
+	 */
+	@Value.Auxiliary
+	public Net withUnixSocketIn(Platform platform, Path defaultDirectory) {
+		if (!isUnixSocket()) {
+			return this;
+		}
+		ImmutableNet withDirectory = getUnixSocketDirectory().isPresent()
+			? ImmutableNet.copyOf(this)
+			: ImmutableNet.copyOf(this).withUnixSocketDirectory(defaultDirectory);
+		if (platform.operatingSystem().type() == OSType.Windows) {
+			return withDirectory.withIsUnixSocket(false);
+		}
+		// max socket path length is 104 on osx and 108 on linux, leave some space for the port
+		Path socket = withDirectory.getUnixSocket().get();
+		if (socket.toString().length() > MAX_UNIX_SOCKET_PATH_LENGTH) {
+			LoggerFactory.getLogger(Net.class).warn("unix socket path too long, use tcp only: {}", socket);
+			return withDirectory.withIsUnixSocket(false);
+		}
+		return withDirectory;
+	}
+
 	@Value.Auxiliary
 	public InetAddress getServerAddress() throws UnknownHostException {
 		if (getBindIp().isPresent()) {
@@ -65,10 +128,22 @@ public abstract class Net {
 		try {
 			InetAddress localHost = de.flapdoodle.net.Net.getLocalHost();
 			int freeServerPort = de.flapdoodle.net.Net.freeServerPort(localHost);
+			return defaults(freeServerPort);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * like {@link #defaults()} with a fixed port
+	 */
+	public static Net defaults(int port) {
+		try {
 			boolean localhostIsIPv6 = de.flapdoodle.net.Net.localhostIsIPv6();
 
 			return builder()
-				.port(freeServerPort)
+				.port(port)
 				.isIpv6(localhostIsIPv6)
 				.build();
 		}
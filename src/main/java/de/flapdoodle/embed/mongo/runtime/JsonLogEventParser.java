@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import de.flapdoodle.embed.process.io.StreamProcessor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * turns structured (json) log output into {@link LogEvent}s and passes everything to the delegate
+ * <p>
+ * lines are collected in one reused buffer, only values of known events are turned into strings
+ */
+public class JsonLogEventParser implements StreamProcessor {
+
+	static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	private final StreamProcessor delegate;
+	private final LogEvents events;
+	private final StringBuilder line = new StringBuilder();
+	private boolean skipLine = false;
+
+	public JsonLogEventParser(StreamProcessor delegate, LogEvents events) {
+		this.delegate = delegate;
+		this.events = events;
+	}
+
+	@Override
+	public void process(String block) {
+		int start = 0;
+		int newLine;
+		while ((newLine = block.indexOf('\n', start)) != -1) {
+			append(block, start, newLine);
+			lineCompleted();
+			start = newLine + 1;
+		}
+		append(block, start, block.length());
+		delegate.process(block);
+	}
+
+	@Override
+	public void onProcessed() {
+		lineCompleted();
+		delegate.onProcessed();
+	}
+
+	private void append(String block, int start, int end) {
+		if (skipLine || start == end) {
+			return;
+		}
+		if (line.length() == 0 && (block.charAt(start) != '{' || !interested())) {
+			skipLine = true;
+			return;
+		}
+		if (line.length() + end - start > MAX_LINE_LENGTH) {
+			line.setLength(0);
+			skipLine = true;
+			return;
+		}
+		line.append(block, start, end);
+	}
+
+	private void lineCompleted() {
+		if (!skipLine && line.length() > 0) {
+			parse(line).ifPresent(events::publish);
+		}
+		line.setLength(0);
+		skipLine = false;
+	}
+
+	private boolean interested() {
+		return events.hasSubscribers() || !events.startup().isPresent();
+	}
+
+	public static Optional<LogEvent> parse(CharSequence line) {
+		try {
+			return new Parser(line).event();
+		}
+		catch (RuntimeException rx) {
+			// not json or not a log event
+			return Optional.empty();
+		}
+	}
+
+	private static final class Parser {
+		private final CharSequence s;
+		private int pos = 0;
+
+		private Parser(CharSequence s) {
+			this.s = s;
+		}
+
+		Optional<LogEvent> event() {
+			int timestamp = -1;
+			int severity = -1;
+			int component = -1;
+			int context = -1;
+			int message = -1;
+			int attributes = -1;
+			long id = -1;
+
+			skipWhitespace();
+			expect('{');
+			skipWhitespace();
+			if (peek() != '}') {
+				do {
+					skipWhitespace();
+					int keyStart = pos + 1;
+					skipString();
+					int keyEnd = pos - 1;
+					skipWhitespace();
+					expect(':');
+					skipWhitespace();
+
+					if (keyIs(keyStart, keyEnd, "t")) {
+						timestamp = pos;
+						skipValue();
+					} else if (keyIs(keyStart, keyEnd, "s")) {
+						severity = pos;
+						skipString();
+					} else if (keyIs(keyStart, keyEnd, "c")) {
+						component = pos;
+						skipString();
+					} else if (keyIs(keyStart, keyEnd, "id")) {
+						id = longValue();
+					} else if (keyIs(keyStart, keyEnd, "ctx")) {
+						context = pos;
+						skipString();
+					} else if (keyIs(keyStart, keyEnd, "msg")) {
+						message = pos;
+						skipString();
+					} else if (keyIs(keyStart, keyEnd, "attr")) {
+						attributes = pos;
+						skipValue();
+					} else {
+						skipValue();
+					}
+					skipWhitespace();
+				} while (tryConsume(','));
+			}
+			expect('}');
+
+			if (component == -1 || message == -1) {
+				return Optional.empty();
+			}
+
+			Optional<LogEvent.Type> type = typeOf(id, component, message);
+			if (!type.isPresent()) {
+				return Optional.empty();
+			}
+
+			return Optional.of(LogEvent.builder()
+				.type(type.get())
+				.timestamp(timestamp != -1 ? timestampAt(timestamp) : "")
+				.severity(severity != -1 ? stringAt(severity) : "")
+				.component(stringAt(component))
+				.id(id)
+				.context(context != -1 ? stringAt(context) : "")
+				.message(stringAt(message))
+				.attributes(attributes != -1 ? attributesAt(attributes) : new LinkedHashMap<>())
+				.build());
+		}
+
+		private Optional<LogEvent.Type> typeOf(long id, int component, int message) {
+			if (id == 4615611L) return Optional.of(LogEvent.Type.STARTUP);
+			if (id == 23016L) return Optional.of(LogEvent.Type.READY);
+			if (id == 22943L) return Optional.of(LogEvent.Type.CONNECTION_ACCEPTED);
+			if (id == 22944L) return Optional.of(LogEvent.Type.CONNECTION_ENDED);
+			if (id == 51803L) return Optional.of(LogEvent.Type.SLOW_QUERY);
+			if (stringIs(component, "ELECTION")) return Optional.of(LogEvent.Type.ELECTION);
+			if (stringIs(component, "INDEX") && stringStartsWith(message, "Index build")) return Optional.of(LogEvent.Type.INDEX_BUILD);
+			return Optional.empty();
+		}
+
+		private String timestampAt(int position) {
+			pos = position;
+			Object value = value();
+			if (value instanceof Map) {
+				Object date = ((Map<?, ?>) value).get("$date");
+				return date != null ? date.toString() : "";
+			}
+			return String.valueOf(value);
+		}
+
+		private String stringAt(int position) {
+			pos = position;
+			return string();
+		}
+
+		private Map<String, Object> attributesAt(int position) {
+			pos = position;
+			return peek() == '{' ? object() : new LinkedHashMap<>();
+		}
+
+		private boolean keyIs(int start, int end, String key) {
+			return end - start == key.length() && regionMatches(start, key);
+		}
+
+		private boolean stringIs(int position, String value) {
+			int end = position + 1 + value.length();
+			return regionMatches(position + 1, value) && end < s.length() && s.charAt(end) == '"';
+		}
+
+		private boolean stringStartsWith(int position, String value) {
+			return regionMatches(position + 1, value);
+		}
+
+		private boolean regionMatches(int start, String value) {
+			if (start + value.length() > s.length()) {
+				return false;
+			}
+			for (int i = 0; i < value.length(); i++) {
+				if (s.charAt(start + i) != value.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Object value() {
+			char c = peek();
+			switch (c) {
+				case '"':
+					return string();
+				case '{':
+					return object();
+				case '[': {
+					List<Object> list = new ArrayList<>();
+					pos++;
+					skipWhitespace();
+					if (!tryConsume(']')) {
+						do {
+							skipWhitespace();
+							list.add(value());
+							skipWhitespace();
+						} while (tryConsume(','));
+						expect(']');
+					}
+					return list;
+				}
+				case 't':
+					literal("true");
+					return Boolean.TRUE;
+				case 'f':
+					literal("false");
+					return Boolean.FALSE;
+				case 'n':
+					literal("null");
+					return null;
+				default:
+					return number();
+			}
+		}
+
+		// json object keys are always strings
+		private Map<String, Object> object() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			expect('{');
+			skipWhitespace();
+			if (!tryConsume('}')) {
+				do {
+					skipWhitespace();
+					String key = string();
+					skipWhitespace();
+					expect(':');
+					skipWhitespace();
+					map.put(key, value());
+					skipWhitespace();
+				} while (tryConsume(','));
+				expect('}');
+			}
+			return map;
+		}
+
+		private void skipValue() {
+			char c = peek();
+			if (c == '"') {
+				skipString();
+			} else if (c == '{' || c == '[') {
+				int depth = 0;
+				do {
+					c = peek();
+					if (c == '"') {
+						skipString();
+						continue;
+					}
+					if (c == '{' || c == '[') depth++;
+					if (c == '}' || c == ']') depth--;
+					pos++;
+				} while (depth > 0);
+			} else {
+				while (pos < s.length() && ",}] \t\r".indexOf(s.charAt(pos)) == -1) {
+					pos++;
+				}
+			}
+		}
+
+		private void skipString() {
+			expect('"');
+			while (true) {
+				char c = s.charAt(pos++);
+				if (c == '\\') {
+					pos++;
+				} else if (c == '"') {
+					return;
+				}
+			}
+		}
+
+		private String string() {
+			expect('"');
+			StringBuilder sb = null;
+			int start = pos;
+			while (true) {
+				char c = s.charAt(pos);
+				if (c == '"') {
+					String result = sb == null
+						? s.subSequence(start, pos).toString()
+						: sb.toString();
+					pos++;
+					return result;
+				}
+				if (c == '\\') {
+					if (sb == null) {
+						sb = new StringBuilder().append(s, start, pos);
+					}
+					char escaped = s.charAt(pos + 1);
+					switch (escaped) {
+						case 'n': sb.append('\n'); break;
+						case 't': sb.append('\t'); break;
+						case 'r': sb.append('\r'); break;
+						case 'b': sb.append('\b'); break;
+						case 'f': sb.append('\f'); break;
+						case 'u':
+							sb.append((char) Integer.parseInt(s.subSequence(pos + 2, pos + 6).toString(), 16));
+							pos += 4;
+							break;
+						default: sb.append(escaped);
+					}
+					pos += 2;
+				} else {
+					if (sb != null) {
+						sb.append(c);
+					}
+					pos++;
+				}
+			}
+		}
+
+		private long longValue() {
+			int start = pos;
+			boolean negative = tryConsume('-');
+			long value = 0;
+			while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+				value = value * 10 + (s.charAt(pos) - '0');
+				pos++;
+			}
+			if (pos == start || (negative && pos == start + 1)) {
+				throw new IllegalArgumentException("number expected at " + start);
+			}
+			return negative ? -value : value;
+		}
+
+		private Number number() {
+			int start = pos;
+			boolean decimal = false;
+			while (pos < s.length()) {
+				char c = s.charAt(pos);
+				if (c == '.' || c == 'e' || c == 'E') {
+					decimal = true;
+				} else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+					break;
+				}
+				pos++;
+			}
+			if (start == pos) {
+				throw new IllegalArgumentException("number expected at " + pos);
+			}
+			String value = s.subSequence(start, pos).toString();
+			return decimal ? (Number) Double.valueOf(value) : (Number) Long.valueOf(value);
+		}
+
+		private void literal(String value) {
+			if (!regionMatches(pos, value)) {
+				throw new IllegalArgumentException("expected " + value + " at " + pos);
+			}
+			pos += value.length();
+		}
+
+		private char peek() {
+			return s.charAt(pos);
+		}
+
+		private void expect(char c) {
+			if (s.charAt(pos) != c) {
+				throw new IllegalArgumentException("expected " + c + " at " + pos);
+			}
+			pos++;
+		}
+
+		private boolean tryConsume(char c) {
+			if (pos < s.length() && s.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+				pos++;
+			}
+		}
+	}
+}
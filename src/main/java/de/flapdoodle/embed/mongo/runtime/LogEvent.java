@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import org.immutables.value.Value;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * structured log event, mongodb writes json logs since 4.4
+ */
+@Value.Immutable
+public abstract class LogEvent {
+
+	public enum Type {
+		STARTUP,
+		READY,
+		CONNECTION_ACCEPTED,
+		CONNECTION_ENDED,
+		SLOW_QUERY,
+		INDEX_BUILD,
+		ELECTION
+	}
+
+	public abstract Type type();
+
+	public abstract String timestamp();
+
+	public abstract String severity();
+
+	public abstract String component();
+
+	public abstract long id();
+
+	public abstract String context();
+
+	public abstract String message();
+
+	public abstract Map<String, Object> attributes();
+
+	@Value.Auxiliary
+	public Optional<Object> attribute(String name) {
+		return Optional.ofNullable(attributes().get(name));
+	}
+
+	@Value.Auxiliary
+	public Optional<String> stringAttribute(String name) {
+		return attribute(name)
+			.filter(String.class::isInstance)
+			.map(String.class::cast);
+	}
+
+	@Value.Auxiliary
+	public Optional<Long> longAttribute(String name) {
+		return attribute(name)
+			.filter(Number.class::isInstance)
+			.map(it -> ((Number) it).longValue());
+	}
+
+	public static ImmutableLogEvent.Builder builder() {
+		return ImmutableLogEvent.builder();
+	}
+}
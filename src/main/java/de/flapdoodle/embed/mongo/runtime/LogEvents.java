@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * dispatches log events of one process to its subscribers
+ */
+public class LogEvents {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LogEvents.class);
+
+	private final List<Consumer<? super LogEvent>> subscribers = new CopyOnWriteArrayList<>();
+	private volatile LogEvent startup;
+
+	public interface Subscription extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	public Subscription subscribe(Consumer<? super LogEvent> subscriber) {
+		subscribers.add(subscriber);
+		return () -> subscribers.remove(subscriber);
+	}
+
+	public boolean hasSubscribers() {
+		return !subscribers.isEmpty();
+	}
+
+	/**
+	 * startup event, kept because it is emitted before anyone could subscribe
+	 */
+	public Optional<LogEvent> startup() {
+		return Optional.ofNullable(startup);
+	}
+
+	void publish(LogEvent event) {
+		if (event.type() == LogEvent.Type.STARTUP) {
+			startup = event;
+		}
+		for (Consumer<? super LogEvent> subscriber : subscribers) {
+			try {
+				subscriber.accept(event);
+			}
+			catch (RuntimeException rx) {
+				LOGGER.warn("subscriber failed on {}", event, rx);
+			}
+		}
+	}
+}
@@ -29,6 +29,8 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,6 +89,10 @@ public class Mongod {
 	private static final int BYTE_BUFFER_LENGTH = 512;
 	private static final int WAITING_TIME_SHUTDOWN_IN_MS = 100;
 
+	// text log before 4.4, json log since 4.4
+	private static final Pattern PROCESS_ID = Pattern.compile(
+		"MongoDB starting : pid=([0-9]+) port|\"msg\":\"MongoDB starting\",\"attr\":\\{\"pid\":([0-9]+)");
+
 	public static boolean sendShutdown(InetAddress hostname, int port) {
 		return sendShutdown(hostname, port, SHUTDOWN_COMMAND);
 	}
@@ -95,6 +101,73 @@ public class Mongod {
 		return sendShutdown(hostname, port, SHUTDOWN_COMMAND_LEGACY);
 	}
 	
+	public enum ShutdownResult {
+		/**
+		 * command was sent, mongod closed the connection
+		 */
+		SENT,
+		/**
+		 * mongod answered with an error (e.g. unauthorized)
+		 */
+		ERROR_REPLY,
+		/**
+		 * command was sent, but mongod did neither answer nor close the connection in time
+		 */
+		NO_REPLY,
+		/**
+		 * could not connect or send the command
+		 */
+		NOT_SENT
+	}
+
+	/**
+	 * sends shutdown with OP_MSG (3.6+) or OP_QUERY, does not wait: the caller should wait for the process to exit
+	 *
+	 * @return true if the command was sent and mongod did not answer with an error
+	 */
+	public static boolean sendShutdown(InetAddress hostname, int port, boolean useOpMsg) {
+		return sendShutdownCommand(hostname, port, useOpMsg) == ShutdownResult.SENT;
+	}
+
+	/**
+	 * like {@link #sendShutdown(InetAddress, int, boolean)}, but tells an error reply apart from a failed connection
+	 */
+	public static ShutdownResult sendShutdownCommand(InetAddress hostname, int port, boolean useOpMsg) {
+		if (!hostname.isLoopbackAddress()) {
+			LOGGER.warn("---------------------------------------\n"
+					+ "Your localhost ({}) is not a loopback adress\n"
+					+ "We can NOT send shutdown to mongod, because it is denied from remote.\n"
+					+ "---------------------------------------\n", hostname.getHostAddress());
+			return ShutdownResult.NOT_SENT;
+		}
+
+		boolean commandSent = false;
+		try (Socket s = new Socket()) {
+			s.setSoTimeout(SOCKET_TIMEOUT);
+			s.connect(new InetSocketAddress(hostname, port), CONNECT_TIMEOUT);
+			WireProtocol.send(s.getOutputStream(), useOpMsg, "admin", WireProtocol.document("shutdown", 1, "force", true));
+			commandSent = true;
+
+			// mongod closes the connection on shutdown, any answer is an error
+			Map<String, Object> reply = WireProtocol.readReply(s.getInputStream());
+			LOGGER.warn("shutdown {}:{} failed: {}", hostname, port, reply);
+			return ShutdownResult.ERROR_REPLY;
+		} catch (SocketTimeoutException sx) {
+			if (commandSent) {
+				LOGGER.warn("shutdown {}:{}: no reply", hostname, port);
+				return ShutdownResult.NO_REPLY;
+			}
+			LOGGER.warn("sendShutdown {}:{}", hostname, port, sx);
+			return ShutdownResult.NOT_SENT;
+		} catch (IOException iox) {
+			if (commandSent) {
+				return ShutdownResult.SENT;
+			}
+			LOGGER.warn("sendShutdown {}:{}", hostname, port, iox);
+			return ShutdownResult.NOT_SENT;
+		}
+	}
+
 	public static boolean sendShutdown(InetAddress hostname, int port, byte[] commandBinaryStream) {
 		if (!hostname.isLoopbackAddress()) {
 			LOGGER.warn("---------------------------------------\n"
@@ -138,10 +211,9 @@ public class Mongod {
 	}
 
 	public static int getMongodProcessId(String output, int defaultValue) {
-		Pattern pattern = Pattern.compile("MongoDB starting : pid=([1234567890]+) port", Pattern.MULTILINE);
-		Matcher matcher = pattern.matcher(output);
+		Matcher matcher = PROCESS_ID.matcher(output);
 		if (matcher.find()) {
-			String value = matcher.group(1);
+			String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
 			return Integer.parseInt(value);
 		}
 		return defaultValue;
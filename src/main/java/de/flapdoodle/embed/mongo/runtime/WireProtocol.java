@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import de.flapdoodle.embed.mongo.packageresolver.NumericVersion;
+import de.flapdoodle.embed.process.distribution.Version;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * minimal mongodb wire protocol client, only used to talk to a local mongod without a driver
+ */
+public class WireProtocol {
+
+	static final int OP_REPLY = 1;
+	static final int OP_QUERY = 2004;
+	static final int OP_MSG = 2013;
+
+	private static final int OP_MSG_WIRE_VERSION = 6;
+	private static final int HEADER_LENGTH = 16;
+	private static final int MAX_MESSAGE_LENGTH = 48 * 1024 * 1024;
+	private static final AtomicInteger REQUEST_ID = new AtomicInteger();
+
+	private WireProtocol() {
+		// no instance
+	}
+
+	/**
+	 * OP_MSG is supported since wire version 6 (mongodb 3.6), most OP_QUERY commands are gone since 5.1
+	 */
+	public static boolean supportsOpMsg(Map<String, Object> isMasterReply) {
+		Object maxWireVersion = isMasterReply.get("maxWireVersion");
+		return maxWireVersion instanceof Number && ((Number) maxWireVersion).intValue() >= OP_MSG_WIRE_VERSION;
+	}
+
+	/**
+	 * OP_MSG is supported since mongodb 3.6
+	 */
+	public static boolean supportsOpMsg(Version version) {
+		try {
+			return NumericVersion.of(version.asInDownloadPath()).isNewerOrEqual(3, 6, 0);
+		}
+		catch (RuntimeException rx) {
+			// unknown version format, current versions all support OP_MSG
+			return true;
+		}
+	}
+
+	public static Map<String, Object> runCommand(InetAddress host, int port, int timeoutInMs, boolean useOpMsg, String database,
+		Map<String, Object> command) throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.setSoTimeout(timeoutInMs);
+			socket.setTcpNoDelay(true);
+			socket.connect(new InetSocketAddress(host, port), timeoutInMs);
+			return runCommand(socket, useOpMsg, database, command);
+		}
+	}
+
+	public static Map<String, Object> runCommand(Socket socket, boolean useOpMsg, String database, Map<String, Object> command) throws IOException {
+		send(socket.getOutputStream(), useOpMsg, database, command);
+		return readReply(socket.getInputStream());
+	}
+
+	public static void send(OutputStream outputStream, boolean useOpMsg, String database, Map<String, Object> command) throws IOException {
+		byte[] message = useOpMsg
+			? opMsg(REQUEST_ID.incrementAndGet(), database, command)
+			: opQuery(REQUEST_ID.incrementAndGet(), database + ".$cmd", command);
+		outputStream.write(message);
+		outputStream.flush();
+	}
+
+	public static Map<String, Object> document(Object... keyValuePairs) {
+		if (keyValuePairs.length % 2 != 0) {
+			throw new IllegalArgumentException("key without value: " + keyValuePairs.length);
+		}
+		Map<String, Object> document = new LinkedHashMap<>();
+		for (int i = 0; i < keyValuePairs.length; i += 2) {
+			document.put((String) keyValuePairs[i], keyValuePairs[i + 1]);
+		}
+		return document;
+	}
+
+	public static boolean isOk(Map<String, Object> reply) {
+		Object ok = reply.get("ok");
+		return ok instanceof Number && ((Number) ok).doubleValue() >= 1.0;
+	}
+
+	static byte[] opQuery(int requestId, String fullCollectionName, Map<String, Object> query) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		writeInt(body, 0); // flags
+		writeCString(body, fullCollectionName);
+		writeInt(body, 0); // numberToSkip
+		writeInt(body, -1); // numberToReturn
+		writeBytes(body, encode(query));
+		return message(requestId, OP_QUERY, body.toByteArray());
+	}
+
+	static byte[] opMsg(int requestId, String database, Map<String, Object> command) {
+		Map<String, Object> withDatabase = new LinkedHashMap<>(command);
+		withDatabase.put("$db", database);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		writeInt(body, 0); // flagBits
+		body.write(0); // section kind: body
+		writeBytes(body, encode(withDatabase));
+		return message(requestId, OP_MSG, body.toByteArray());
+	}
+
+	static Map<String, Object> readReply(InputStream inputStream) throws IOException {
+		DataInputStream input = new DataInputStream(inputStream);
+		byte[] header = new byte[HEADER_LENGTH];
+		input.readFully(header);
+		ByteBuffer headerBuffer = littleEndian(header);
+		int messageLength = headerBuffer.getInt(0);
+		int opCode = headerBuffer.getInt(12);
+		if (messageLength < HEADER_LENGTH || messageLength > MAX_MESSAGE_LENGTH) {
+			throw new IOException("invalid message length: " + messageLength);
+		}
+
+		byte[] body = new byte[messageLength - HEADER_LENGTH];
+		input.readFully(body);
+		ByteBuffer buffer = littleEndian(body);
+
+		switch (opCode) {
+			case OP_REPLY:
+				// responseFlags(4), cursorID(8), startingFrom(4), numberReturned(4)
+				buffer.position(20);
+				return decode(buffer);
+			case OP_MSG:
+				// flagBits(4), section kind(1)
+				buffer.position(4);
+				byte kind = buffer.get();
+				if (kind != 0) {
+					throw new IOException("unexpected section kind: " + kind);
+				}
+				return decode(buffer);
+			default:
+				throw new IOException("unexpected opCode: " + opCode);
+		}
+	}
+
+	static byte[] encode(Map<String, Object> document) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		document.forEach((key, value) -> writeElement(content, key, value));
+		content.write(0);
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		writeInt(result, content.size() + 4);
+		writeBytes(result, content.toByteArray());
+		return result.toByteArray();
+	}
+
+	static Map<String, Object> decode(ByteBuffer buffer) {
+		int start = buffer.position();
+		int length = buffer.getInt();
+		int end = start + length - 1;
+
+		Map<String, Object> document = new LinkedHashMap<>();
+		while (buffer.position() < end) {
+			byte type = buffer.get();
+			String name = readCString(buffer);
+			document.put(name, readValue(buffer, type));
+		}
+		buffer.position(start + length);
+		return document;
+	}
+
+	private static Object readValue(ByteBuffer buffer, byte type) {
+		switch (type) {
+			case 0x01:
+				return buffer.getDouble();
+			case 0x02:
+				return readString(buffer);
+			case 0x03:
+				return decode(buffer);
+			case 0x04:
+				return new ArrayList<>(decode(buffer).values());
+			case 0x05: {
+				int size = buffer.getInt();
+				buffer.get(); // subtype
+				byte[] data = new byte[size];
+				buffer.get(data);
+				return data;
+			}
+			case 0x06:
+			case 0x0A:
+			case (byte) 0xFF:
+			case 0x7F:
+				return null;
+			case 0x07:
+				skip(buffer, 12);
+				return null;
+			case 0x08:
+				return buffer.get() != 0;
+			case 0x09:
+			case 0x11:
+			case 0x12:
+				return buffer.getLong();
+			case 0x0B:
+				return readCString(buffer) + "/" + readCString(buffer);
+			case 0x0D:
+			case 0x0E:
+				return readString(buffer);
+			case 0x10:
+				return buffer.getInt();
+			case 0x13:
+				skip(buffer, 16);
+				return null;
+			default:
+				throw new IllegalArgumentException("unsupported bson type: " + type);
+		}
+	}
+
+	private static Map<String, Object> asDocument(String key, Map<?, ?> map) {
+		Map<String, Object> document = new LinkedHashMap<>();
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!(entry.getKey() instanceof String)) {
+				throw new IllegalArgumentException("document keys must be strings: " + entry.getKey() + " in " + key);
+			}
+			document.put((String) entry.getKey(), entry.getValue());
+		}
+		return document;
+	}
+
+	private static void writeElement(ByteArrayOutputStream out, String key, Object value) {
+		if (value instanceof Double) {
+			out.write(0x01);
+			writeCString(out, key);
+			writeLong(out, Double.doubleToLongBits((Double) value));
+		} else if (value instanceof String) {
+			out.write(0x02);
+			writeCString(out, key);
+			byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+			writeInt(out, bytes.length + 1);
+			writeBytes(out, bytes);
+			out.write(0);
+		} else if (value instanceof Map) {
+			out.write(0x03);
+			writeCString(out, key);
+			writeBytes(out, encode(asDocument(key, (Map<?, ?>) value)));
+		} else if (value instanceof List) {
+			out.write(0x04);
+			writeCString(out, key);
+			Map<String, Object> asDocument = new LinkedHashMap<>();
+			List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				asDocument.put("" + i, list.get(i));
+			}
+			writeBytes(out, encode(asDocument));
+		} else if (value instanceof Boolean) {
+			out.write(0x08);
+			writeCString(out, key);
+			out.write(((Boolean) value) ? 1 : 0);
+		} else if (value == null) {
+			out.write(0x0A);
+			writeCString(out, key);
+		} else if (value instanceof Integer) {
+			out.write(0x10);
+			writeCString(out, key);
+			writeInt(out, (Integer) value);
+		} else if (value instanceof Long) {
+			out.write(0x12);
+			writeCString(out, key);
+			writeLong(out, (Long) value);
+		} else {
+			throw new IllegalArgumentException("unsupported type: " + value.getClass() + " of " + key);
+		}
+	}
+
+	private static byte[] message(int requestId, int opCode, byte[] body) {
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		writeInt(message, HEADER_LENGTH + body.length);
+		writeInt(message, requestId);
+		writeInt(message, 0); // responseTo
+		writeInt(message, opCode);
+		writeBytes(message, body);
+		return message.toByteArray();
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), size - 1, StandardCharsets.UTF_8);
+		skip(buffer, size);
+		return value;
+	}
+
+	private static String readCString(ByteBuffer buffer) {
+		int start = buffer.position();
+		while (buffer.get() != 0) {
+			// search terminating zero
+		}
+		return new String(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start - 1, StandardCharsets.UTF_8);
+	}
+
+	private static void skip(ByteBuffer buffer, int bytes) {
+		buffer.position(buffer.position() + bytes);
+	}
+
+	private static ByteBuffer littleEndian(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void writeCString(ByteArrayOutputStream out, String value) {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+		out.write(0);
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	private static void writeLong(ByteArrayOutputStream out, long value) {
+		writeInt(out, (int) value);
+		writeInt(out, (int) (value >>> 32));
+	}
+
+	private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+		out.write(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.reverse.TransitionWalker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * runs a blocking start on an executor: mongod and the tools have no non-blocking start (readiness is detected
+ * by reading the process output), so each start still occupies one executor thread until it is done,
+ * the caller thread is free to start other instances in the meantime
+ */
+abstract class AsyncStart {
+
+	private AsyncStart() {
+		// no instance
+	}
+
+	/**
+	 * if the returned future is cancelled or completed otherwise before the state is reached, the state is closed
+	 */
+	static <T> CompletableFuture<TransitionWalker.ReachedState<T>> start(Supplier<TransitionWalker.ReachedState<T>> start, Executor executor) {
+		CompletableFuture<TransitionWalker.ReachedState<T>> result = new CompletableFuture<>();
+		executor.execute(() -> {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				TransitionWalker.ReachedState<T> state = start.get();
+				if (!result.complete(state)) {
+					state.close();
+				}
+			}
+			catch (Throwable t) {
+				// like CompletableFuture.supplyAsync, an error must not leave the future incomplete
+				result.completeExceptionally(t);
+			}
+		});
+		return result;
+	}
+}
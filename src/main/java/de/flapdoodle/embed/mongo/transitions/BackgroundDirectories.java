@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.io.Files;
+import de.flapdoodle.embed.process.io.directories.TempDir;
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.types.Try;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * like {@link de.flapdoodle.embed.process.transitions.Directories#deleteOnTearDown(Function, Function)},
+ * but tear down only moves the directory into a trash area of the temp dir, which is emptied in background
+ * <p>
+ * each jvm uses its own locked subdirectory of the trash area, leftovers of other jvms (crashed runs)
+ * are deleted when the trash area is used for the first time if their lock is not held anymore,
+ * pending deletions are finished on jvm exit, deletions after that are done inline
+ */
+public abstract class BackgroundDirectories {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundDirectories.class);
+
+	static final String TRASH = ".trash";
+
+	private static final int REAPER_THREADS = 2;
+	private static final int REAPER_QUEUE_SIZE = 64;
+	private static final long DRAIN_TIMEOUT_IN_SECONDS = 30;
+
+	private static final String PROCESS_TRASH = UUID.randomUUID().toString();
+	private static final String LOCK_SUFFIX = ".lock";
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private static final ConcurrentMap<Path, Path> TRASH_DIRS = new ConcurrentHashMap<>();
+	// held until the jvm exits
+	private static final List<FileChannel> TRASH_LOCKS = new CopyOnWriteArrayList<>();
+
+	private static final ThreadPoolExecutor REAPER = new ThreadPoolExecutor(REAPER_THREADS, REAPER_THREADS, 1, TimeUnit.MINUTES,
+		new ArrayBlockingQueue<>(REAPER_QUEUE_SIZE),
+		runnable -> {
+			Thread thread = new Thread(runnable, "delete-directories-" + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	static {
+		REAPER.allowCoreThreadTimeOut(true);
+		Runtime.getRuntime().addShutdownHook(new Thread(BackgroundDirectories::drain, "drain-delete-directories"));
+	}
+
+	private BackgroundDirectories() {
+		// no instance
+	}
+
+	public static <T> Function<TempDir, State<T>> deleteInBackgroundOnTearDown(Function<TempDir, Path> pathFactory, Function<Path, T> wrapper) {
+		return tempDir -> {
+			Path path = pathFactory.apply(tempDir);
+			return State.of(wrapper.apply(path), ignore -> delete(tempDir, path));
+		};
+	}
+
+	/**
+	 * moves path into the trash area of tempDir and deletes it in background
+	 */
+	public static void delete(TempDir tempDir, Path path) {
+		Path trashed = moveToTrash(tempDir, path);
+		execute(REAPER, () -> deleteAll(trashed));
+	}
+
+	/**
+	 * runs the task inline if the reaper is shut down (e.g. stop from another shutdown hook) or busy
+	 */
+	static void execute(ExecutorService reaper, Runnable task) {
+		if (!reaper.isShutdown()) {
+			try {
+				reaper.execute(task);
+				return;
+			}
+			catch (RejectedExecutionException ignore) {
+				// shut down concurrently or queue is full
+			}
+		}
+		task.run();
+	}
+
+	static void drain() {
+		REAPER.shutdown();
+		try {
+			if (!REAPER.awaitTermination(DRAIN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.warn("could not delete all directories in {}s", DRAIN_TIMEOUT_IN_SECONDS);
+			}
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Path moveToTrash(TempDir tempDir, Path path) {
+		try {
+			Path target = trashOf(tempDir).resolve(UUID.randomUUID().toString());
+			return java.nio.file.Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | RuntimeException ex) {
+			// other filesystem or files still in use, delete in place
+			LOGGER.debug("could not move {} to trash", path, ex);
+			return path;
+		}
+	}
+
+	static Path trashOf(TempDir tempDir) {
+		Path key = tempDir.value().toAbsolutePath();
+		Path existing = TRASH_DIRS.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		synchronized (TRASH_DIRS) {
+			existing = TRASH_DIRS.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			Path root = key.resolve(TRASH);
+			Path trash = root.resolve(PROCESS_TRASH);
+			// lock before the directory exists, so other jvms never see it unlocked
+			Try.run(() -> {
+				java.nio.file.Files.createDirectories(root);
+				FileChannel channel = FileChannel.open(root.resolve(PROCESS_TRASH + LOCK_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				channel.lock();
+				TRASH_LOCKS.add(channel);
+				java.nio.file.Files.createDirectories(trash);
+			});
+			sweep(root);
+			TRASH_DIRS.put(key, trash);
+			return trash;
+		}
+	}
+
+	/**
+	 * deletes trash of other jvms if they are gone (lock not held)
+	 */
+	private static void sweep(Path root) {
+		try (DirectoryStream<Path> entries = java.nio.file.Files.newDirectoryStream(root)) {
+			for (Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if (name.startsWith(PROCESS_TRASH) || name.endsWith(LOCK_SUFFIX)) {
+					continue;
+				}
+				Path lockFile = root.resolve(name + LOCK_SUFFIX);
+				if (isAbandoned(lockFile)) {
+					execute(REAPER, () -> {
+						deleteAll(entry);
+						Try.run(() -> java.nio.file.Files.deleteIfExists(lockFile));
+					});
+				}
+			}
+		}
+		catch (IOException iox) {
+			LOGGER.warn("could not sweep {}", root, iox);
+		}
+	}
+
+	private static boolean isAbandoned(Path lockFile) {
+		if (!java.nio.file.Files.exists(lockFile)) {
+			return true;
+		}
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+			FileLock lock = channel.tryLock();
+			if (lock != null) {
+				lock.release();
+				return true;
+			}
+			return false;
+		}
+		catch (IOException | OverlappingFileLockException ex) {
+			return false;
+		}
+	}
+
+	private static void deleteAll(Path path) {
+		try {
+			Files.deleteAll(path);
+		}
+		catch (IOException | RuntimeException ex) {
+			LOGGER.warn("could not delete {}", path, ex);
+		}
+	}
+}
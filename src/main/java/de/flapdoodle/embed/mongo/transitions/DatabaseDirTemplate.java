@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.types.DatabaseDir;
+import de.flapdoodle.embed.mongo.util.FileUtils;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.embed.process.io.Files;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import de.flapdoodle.embed.process.io.directories.TempDir;
+import de.flapdoodle.reverse.*;
+import de.flapdoodle.reverse.naming.HasLabel;
+import de.flapdoodle.types.Try;
+import org.immutables.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * creates a database dir as clone of a template, the template is created once
+ * for each version, name and fingerprint by starting a mongod and calling populate
+ */
+@Value.Immutable
+public abstract class DatabaseDirTemplate implements Transition<DatabaseDir>, HasLabel {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseDirTemplate.class);
+
+	@Value.Parameter
+	public abstract String name();
+
+	@Value.Parameter
+	protected abstract Consumer<RunningMongodProcess> populate();
+
+	/**
+	 * must change if populate does something else (e.g. a content hash of the fixture or a version
+	 * of the populate code), or an existing template with the same name is used
+	 */
+	@Value.Default
+	public String fingerprint() {
+		return "";
+	}
+
+	/**
+	 * used to create the template, must not use this template as database dir
+	 */
+	@Value.Default
+	protected Mongod mongod() {
+		return Mongod.instance();
+	}
+
+	@Override
+	@Value.Auxiliary
+	public String transitionLabel() {
+		return "Clone database template " + name();
+	}
+
+	@Override
+	@Value.Default
+	public StateID<DatabaseDir> destination() {
+		return StateID.of(DatabaseDir.class);
+	}
+
+	@Value.Default
+	public StateID<TempDir> tempDir() {
+		return StateID.of(TempDir.class);
+	}
+
+	@Value.Default
+	public StateID<PersistentDir> persistentDir() {
+		return StateID.of(PersistentDir.class);
+	}
+
+	@Value.Default
+	public StateID<Version> version() {
+		return StateID.of(Version.class);
+	}
+
+	@Override
+	@Value.Auxiliary
+	public Set<StateID<?>> sources() {
+		return StateID.setOf(tempDir(), persistentDir(), version());
+	}
+
+	@Override
+	public State<DatabaseDir> result(StateLookup lookup) {
+		TempDir tempDir = lookup.of(tempDir());
+		PersistentDir persistentDir = lookup.of(persistentDir());
+		Version version = lookup.of(version());
+
+		Path template = templateDir(persistentDir, version, name(), fingerprint());
+
+		try {
+			if (!java.nio.file.Files.isDirectory(template)) {
+				createTemplate(template, version);
+			}
+
+			Path databaseDir = tempDir.createDirectory("mongod-database");
+			FileUtils.cloneDirectory(template, databaseDir);
+			return State.of(DatabaseDir.of(databaseDir), dir -> BackgroundDirectories.delete(tempDir, dir.value()));
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not create database dir from template " + template, iox);
+		}
+	}
+
+	private void createTemplate(Path template, Version version) throws IOException {
+		java.nio.file.Files.createDirectories(template.getParent());
+		Path staging = template.resolveSibling(template.getFileName() + "-" + UUID.randomUUID());
+		java.nio.file.Files.createDirectory(staging);
+
+		try {
+			Listener copyDatabaseDir = Listener.typedBuilder()
+				.onStateTearDown(StateID.of(DatabaseDir.class),
+					databaseDir -> Try.run(() -> FileUtils.cloneDirectory(databaseDir.value(), staging)))
+				.build();
+
+			LOGGER.info("create database template {}", template);
+			try (TransitionWalker.ReachedState<RunningMongodProcess> running = mongod().start(version, copyDatabaseDir)) {
+				populate().accept(running.current());
+			}
+
+			try {
+				java.nio.file.Files.move(staging, template, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (FileAlreadyExistsException | DirectoryNotEmptyException ignore) {
+				LOGGER.debug("database template {} created concurrently", template);
+			}
+		}
+		finally {
+			if (java.nio.file.Files.exists(staging)) {
+				Files.deleteAll(staging);
+			}
+		}
+	}
+
+	static Path templateDir(PersistentDir persistentDir, Version version, String name, String fingerprint) {
+		return persistentDir.value()
+			.resolve("databaseTemplates")
+			.resolve(version.asInDownloadPath())
+			.resolve(name + "-" + shortHash(fingerprint));
+	}
+
+	private static String shortHash(String value) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				hex.append(String.format("%02x", hash[i]));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static ImmutableDatabaseDirTemplate of(String name, Consumer<RunningMongodProcess> populate) {
+		return ImmutableDatabaseDirTemplate.of(name, populate);
+	}
+
+	public static ImmutableDatabaseDirTemplate of(String name, String fingerprint, Consumer<RunningMongodProcess> populate) {
+		return of(name, populate).withFingerprint(fingerprint);
+	}
+
+	public static ImmutableDatabaseDirTemplate.Builder builder() {
+		return ImmutableDatabaseDirTemplate.builder();
+	}
+}
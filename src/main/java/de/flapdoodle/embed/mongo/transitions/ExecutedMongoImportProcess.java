@@ -42,4 +42,14 @@ public abstract class ExecutedMongoImportProcess implements ExecutedProcess {
 			.destination(StateID.of(ExecutedMongoImportProcess.class))
 			.build();
 	}
+
+	/**
+	 * reads the import data from {@link ProcessInput} (stdin) instead of a file
+	 */
+	public static Transition<ExecutedMongoImportProcess> withInput() {
+		return ExecutedWithInput.of(StateID.of(ExecutedMongoImportProcess.class),
+			returnCode -> ImmutableExecutedMongoImportProcess.builder()
+				.returnCode(returnCode)
+				.build());
+	}
 }
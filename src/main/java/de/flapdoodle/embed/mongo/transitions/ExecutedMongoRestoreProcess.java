@@ -42,4 +42,14 @@ public abstract class ExecutedMongoRestoreProcess implements ExecutedProcess {
 			.destination(StateID.of(ExecutedMongoRestoreProcess.class))
 			.build();
 	}
+
+	/**
+	 * reads the archive from {@link ProcessInput} (stdin)
+	 */
+	public static Transition<ExecutedMongoRestoreProcess> withInput() {
+		return ExecutedWithInput.of(StateID.of(ExecutedMongoRestoreProcess.class),
+			returnCode -> ImmutableExecutedMongoRestoreProcess.builder()
+				.returnCode(returnCode)
+				.build());
+	}
 }
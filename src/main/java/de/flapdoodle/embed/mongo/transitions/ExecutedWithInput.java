@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.types.ExecutedProcess;
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.StateLookup;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.naming.HasLabel;
+import org.immutables.value.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * runs a tool process to completion while {@link ProcessInput} is piped into its stdin
+ */
+@Value.Immutable
+public abstract class ExecutedWithInput<T extends ExecutedProcess> extends ToolProcessStarter implements Transition<T>, HasLabel {
+
+	@Override
+	@Value.Parameter
+	public abstract StateID<T> destination();
+
+	@Value.Parameter
+	protected abstract IntFunction<T> executedProcess();
+
+	@Value.Default
+	public StateID<ProcessInput> processInput() {
+		return StateID.of(ProcessInput.class);
+	}
+
+	@Override
+	@Value.Default
+	public String transitionLabel() {
+		return "Execute with input";
+	}
+
+	@Override
+	public Set<StateID<?>> sources() {
+		Set<StateID<?>> sources = new LinkedHashSet<>(processSources());
+		sources.add(processInput());
+		return sources;
+	}
+
+	@Override
+	public State<T> result(StateLookup lookup) {
+		ProcessInput input = lookup.of(processInput());
+		Started started = start(lookup, this, false);
+
+		IOException writeFailed = null;
+		try (OutputStream stdin = started.process().getOutputStream()) {
+			input.writeTo(stdin);
+		}
+		catch (IOException iox) {
+			writeFailed = iox;
+		}
+		catch (RuntimeException rx) {
+			started.destroy();
+			throw rx;
+		}
+
+		int returnCode = started.waitFor();
+		if (writeFailed != null) {
+			throw new RuntimeException("could not write input, process exited with " + returnCode, writeFailed);
+		}
+		return State.of(executedProcess().apply(returnCode));
+	}
+
+	public static <T extends ExecutedProcess> ImmutableExecutedWithInput<T> of(StateID<T> destination, IntFunction<T> executedProcess) {
+		return ImmutableExecutedWithInput.of(destination, executedProcess);
+	}
+}
@@ -88,6 +88,9 @@ public interface ExtractFileSet {
 			.providedBy(StandardConsoleProgressListener::new);
 	}
 
+	/**
+	 * use {@link ParallelExtractPackage} to extract into one shared dir for each archive in parallel
+	 */
 	@Value.Default
 	default Transition<ExtractedFileSet> extractPackage() {
 		return ExtractPackage.withDefaults()
@@ -32,6 +32,8 @@ import org.immutables.value.Value;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 @Value.Immutable
@@ -48,10 +50,22 @@ public class MongoDump implements Environment, WorkspaceDefaults, VersionAndPlat
 				Start.to(de.flapdoodle.embed.process.distribution.Version.class).initializedWith(version),
 				Start.to(MongoDumpArguments.class).initializedWith(MongoDumpArguments.defaults()),
 				MongoDumpProcessArguments.withDefaults(),
-				ExecutedMongoDumpProcess.withDefaults()
+				ExecutedMongoDumpProcess.withDefaults(),
+				MongoDumpArchiveStarter.withDefaults()
 			);
 	}
 
+	/**
+	 * the archive is written to stdout and can be read from {@link RunningMongoDumpArchive#stream()}
+	 */
+	@Value.Auxiliary
+	public TransitionWalker.ReachedState<RunningMongoDumpArchive> startArchiveStream(Version version, Listener... listener) {
+		return transitions(version)
+			.replace(Start.to(MongoDumpArguments.class).initializedWith(MongoDumpArguments.defaults().withArchiveToStdout(true)))
+			.walker()
+			.initState(StateID.of(RunningMongoDumpArchive.class), listener);
+	}
+
 	@Value.Auxiliary
 	public TransitionWalker.ReachedState<ExecutedMongoDumpProcess> start(Version version, Listener... listener) {
 		return transitions(version)
@@ -66,6 +80,14 @@ public class MongoDump implements Environment, WorkspaceDefaults, VersionAndPlat
 			.initState(StateID.of(ExecutedMongoDumpProcess.class), listener);
 	}
 
+	/**
+	 * runs the blocking start on the executor, each start occupies one executor thread until it is done
+	 */
+	@Value.Auxiliary
+	public CompletableFuture<TransitionWalker.ReachedState<ExecutedMongoDumpProcess>> startAsync(Version version, Executor executor, Listener... listener) {
+		return AsyncStart.start(() -> start(version, listener), executor);
+	}
+
 	@Value.Auxiliary
 	public void start(Version version, Consumer<ExecutedMongoDumpProcess> withRunningMongoDump, Listener... listener) {
 		start(version, withRunningMongoDump, Arrays.asList(listener));
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.StateLookup;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.naming.HasLabel;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * starts mongodump with {@link de.flapdoodle.embed.mongo.commands.MongoDumpArguments#archiveToStdout()},
+ * the process is destroyed on tear down if the archive was not read completely
+ */
+@Value.Immutable
+public abstract class MongoDumpArchiveStarter extends ToolProcessStarter implements Transition<RunningMongoDumpArchive>, HasLabel {
+
+	@Override
+	@Value.Default
+	public StateID<RunningMongoDumpArchive> destination() {
+		return StateID.of(RunningMongoDumpArchive.class);
+	}
+
+	@Override
+	@Value.Auxiliary
+	public String transitionLabel() {
+		return "Start mongoDump archive stream";
+	}
+
+	@Override
+	public Set<StateID<?>> sources() {
+		return processSources();
+	}
+
+	@Override
+	public State<RunningMongoDumpArchive> result(StateLookup lookup) {
+		List<String> arguments = lookup.of(arguments()).value();
+		if (!arguments.contains("--archive")) {
+			throw new IllegalArgumentException("archiveToStdout not set: " + arguments);
+		}
+		RunningMongoDumpArchive archive = new RunningMongoDumpArchive(start(lookup, this, true));
+		return State.of(archive, RunningMongoDumpArchive::stop);
+	}
+
+	public static ImmutableMongoDumpArchiveStarter withDefaults() {
+		return ImmutableMongoDumpArchiveStarter.builder().build();
+	}
+}
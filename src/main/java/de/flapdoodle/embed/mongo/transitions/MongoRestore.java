@@ -23,12 +23,16 @@ package de.flapdoodle.embed.mongo.transitions;
 import de.flapdoodle.embed.mongo.commands.MongoRestoreArguments;
 import de.flapdoodle.embed.mongo.packageresolver.Command;
 import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
 import de.flapdoodle.reverse.StateID;
 import de.flapdoodle.reverse.TransitionWalker;
 import de.flapdoodle.reverse.Transitions;
 import de.flapdoodle.reverse.transitions.Start;
 import org.immutables.value.Value;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 @Value.Immutable
 public class MongoRestore implements Environment, WorkspaceDefaults, VersionAndPlatform, ProcessDefaults, CommandName, ExtractFileSet {
 
@@ -48,12 +52,39 @@ public class MongoRestore implements Environment, WorkspaceDefaults, VersionAndP
 			);
 	}
 
+	/**
+	 * the archive is piped into stdin, e.g. from {@link RunningMongoDumpArchive#asProcessInput()}
+	 */
+	public Transitions transitions(de.flapdoodle.embed.process.distribution.Version version, ProcessInput input) {
+		return transitions(version)
+			.replace(Start.to(MongoRestoreArguments.class).initializedWith(MongoRestoreArguments.defaults().withArchiveFromStdin(true)))
+			.replace(ExecutedMongoRestoreProcess.withInput())
+			.addAll(Start.to(ProcessInput.class).initializedWith(input));
+	}
+
 	public TransitionWalker.ReachedState<ExecutedMongoRestoreProcess> start(Version version) {
+		return start(version, new Listener[0]);
+	}
+
+	public TransitionWalker.ReachedState<ExecutedMongoRestoreProcess> start(Version version, Listener... listener) {
 		return transitions(version)
+			.walker()
+			.initState(StateID.of(ExecutedMongoRestoreProcess.class), listener);
+	}
+
+	public TransitionWalker.ReachedState<ExecutedMongoRestoreProcess> start(Version version, ProcessInput input) {
+		return transitions(version, input)
 			.walker()
 			.initState(StateID.of(ExecutedMongoRestoreProcess.class));
 	}
 
+	/**
+	 * runs the blocking start on the executor, each start occupies one executor thread until it is done
+	 */
+	public CompletableFuture<TransitionWalker.ReachedState<ExecutedMongoRestoreProcess>> startAsync(Version version, Executor executor, Listener... listener) {
+		return AsyncStart.start(() -> start(version, listener), executor);
+	}
+
 	public static ImmutableMongoRestore instance() {
 		return builder().build();
 	}
@@ -24,6 +24,7 @@ import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.mongo.types.StartTimeout;
 import de.flapdoodle.embed.process.archives.ExtractedFileSet;
 import de.flapdoodle.embed.process.config.SupportConfig;
+import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.io.ProcessOutput;
 import de.flapdoodle.embed.process.types.*;
 import de.flapdoodle.os.Platform;
@@ -40,6 +41,7 @@ import java.util.Map;
 import java.util.Set;
 
 public abstract class MongoServerStarter<T extends RunningProcess> implements Transition<T> {
+
 	@Value.Default
 	public StateID<ExtractedFileSet> processExecutable() {
 		return StateID.of(ExtractedFileSet.class);
@@ -89,6 +91,25 @@ public abstract class MongoServerStarter<T extends RunningProcess> implements Tr
 		return StateID.of(StartTimeout.class);
 	}
 
+	@Value.Default
+	public StateID<Version> version() {
+		return StateID.of(Version.class);
+	}
+
+	@Value.Default
+	public ReadinessCheck readinessCheck() {
+		return ReadinessCheck.LOG_MESSAGE;
+	}
+
+	/**
+	 * kill the process on tear down, use only if all data is thrown away,
+	 * processes other than {@link RunningMongoProcess} are stopped as usual
+	 */
+	@Value.Default
+	public boolean killOnTearDown() {
+		return false;
+	}
+
 	@Override
 	public Set<StateID<?>> sources() {
 		return StateID.setOf(
@@ -101,12 +122,13 @@ public abstract class MongoServerStarter<T extends RunningProcess> implements Tr
 			processOutput(),
 			supportConfig(),
 			platform(),
-			net()
+			net(),
+			version()
 		);
 	}
 
 	@Value.Auxiliary
-	protected abstract RunningProcessFactory<T> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net);
+	protected abstract RunningProcessFactory<T> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net, Version version);
 
 	@Override
 	public State<T> result(StateLookup lookup) {
@@ -119,15 +141,23 @@ public abstract class MongoServerStarter<T extends RunningProcess> implements Tr
 		ProcessOutput processOutput = lookup.of(processOutput());
 		SupportConfig supportConfig = lookup.of(supportConfig());
 		Platform platform = lookup.of(platform());
-		Net net = lookup.of(net());
+		Net net = lookup.of(net()).withUnixSocketIn(platform, processWorkingDir);
+		Version version = lookup.of(version());
+
 
 		try {
-			RunningProcessFactory<T> factory = factory(startTimeout.value(), supportConfig, platform, net);
+			RunningProcessFactory<T> factory = factory(startTimeout.value(), supportConfig, platform, net, version);
 
 			T running = RunningProcess.start(factory, processWorkingDir, fileSet.executable(), arguments, environment, processConfig,
 				processOutput, supportConfig);
 
-			return State.of(running, RunningProcess::stop);
+			return State.of(running, it -> {
+				if (killOnTearDown() && it instanceof RunningMongoProcess) {
+					((RunningMongoProcess) it).kill();
+				} else {
+					it.stop();
+				}
+			});
 		}
 		catch (IOException ix) {
 			String hint = "";
@@ -137,5 +167,4 @@ public abstract class MongoServerStarter<T extends RunningProcess> implements Tr
 			throw new RuntimeException("could not start process" + hint, ix);
 		}
 	}
-
 }
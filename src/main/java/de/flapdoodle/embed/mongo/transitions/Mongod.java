@@ -26,7 +26,6 @@ import de.flapdoodle.embed.mongo.packageresolver.Command;
 import de.flapdoodle.embed.mongo.types.DatabaseDir;
 import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.io.directories.TempDir;
-import de.flapdoodle.embed.process.transitions.Directories;
 import de.flapdoodle.reverse.*;
 import de.flapdoodle.reverse.transitions.Derive;
 import de.flapdoodle.reverse.transitions.Start;
@@ -34,6 +33,8 @@ import org.immutables.value.Value;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 @Value.Immutable
@@ -44,15 +45,34 @@ public class Mongod implements Environment, WorkspaceDefaults, VersionAndPlatfor
 		return Start.to(MongodArguments.class).initializedWith(MongodArguments.defaults());
 	}
 
+	/**
+	 * use {@link PortAllocator#reservedNet()} for ports which are reserved across parallel test jvms
+	 */
 	@Value.Default
 	public Transition<Net> net() {
 		return Start.to(Net.class).providedBy(Net::defaults);
 	}
 
+	/**
+	 * how often mongod is started again if the port picked by {@link PortAllocator#reservedNet()} is already in use
+	 */
+	@Value.Default
+	public int portConflictRetries() {
+		return 3;
+	}
+
+	/**
+	 * kill mongod on tear down without shutdown, data is lost
+	 */
+	@Value.Default
+	public boolean throwaway() {
+		return false;
+	}
+
 	@Value.Default
 	public Transition<DatabaseDir> databaseDir() {
 		return Derive.given(TempDir.class).state(DatabaseDir.class)
-			.with(Directories.deleteOnTearDown(
+			.with(BackgroundDirectories.deleteInBackgroundOnTearDown(
 				TempDir.createDirectoryWith("mongod-database"),
 				DatabaseDir::of
 			));
@@ -85,21 +105,35 @@ public class Mongod implements Environment, WorkspaceDefaults, VersionAndPlatfor
 				databaseDir(),
 				mongodArguments(),
 				mongodProcessArguments(),
-				mongodStarter()
+				throwaway()
+					? ImmutableMongodStarter.copyOf(mongodStarter()).withKillOnTearDown(true)
+					: mongodStarter()
 			);
 	}
 
 	@Value.Auxiliary
 	public TransitionWalker.ReachedState<RunningMongodProcess> start(Version version, Listener... listener) {
-		return transitions(version)
-			.walker()
-			.initState(StateID.of(RunningMongodProcess.class), listener);
+		return start(version, Arrays.asList(listener));
 	}
 
 	@Value.Auxiliary
 	public TransitionWalker.ReachedState<RunningMongodProcess> start(Version version, Collection<Listener> listener) {
-		return transitions(version)
+		return PortConflictRetry.start(withRetryListener -> transitions(version)
 			.walker()
+			.initState(StateID.of(RunningMongodProcess.class), withRetryListener), listener, portConflictRetries());
+	}
+
+	/**
+	 * runs the blocking start on the executor, each start occupies one executor thread until it is done
+	 */
+	@Value.Auxiliary
+	public CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> startAsync(Version version, Executor executor, Listener... listener) {
+		return AsyncStart.start(() -> start(version, listener), executor);
+	}
+
+	@Value.Auxiliary
+	public TransitionWalker.ReachedState<RunningMongodProcess> startParallel(Version version, Executor executor, Listener... listener) {
+		return ParallelWalker.of(transitions(version), executor)
 			.initState(StateID.of(RunningMongodProcess.class), listener);
 	}
 
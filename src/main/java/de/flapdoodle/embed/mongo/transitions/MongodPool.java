@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
+import org.immutables.value.Value;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * keeps a number of started mongod instances around and hands them out as leases
+ */
+@Value.Immutable
+public abstract class MongodPool {
+
+	@Value.Parameter
+	protected abstract Mongod mongod();
+
+	@Value.Parameter
+	protected abstract Version version();
+
+	@Value.Default
+	public int size() {
+		return 2;
+	}
+
+	/**
+	 * called if a lease is returned, if not set, the instance is stopped and replaced by a new one
+	 */
+	public abstract Optional<Consumer<RunningMongodProcess>> reset();
+
+	public abstract List<Listener> listener();
+
+	@Value.Check
+	protected void check() {
+		if (size() < 1) {
+			throw new IllegalArgumentException("size must be greater than 0: " + size());
+		}
+	}
+
+	@Value.Auxiliary
+	public RunningMongodPool start() {
+		return new RunningMongodPool(() -> mongod().start(version(), listener()), reset(), size());
+	}
+
+	public static ImmutableMongodPool.Builder builder() {
+		return ImmutableMongodPool.builder();
+	}
+
+	public static ImmutableMongodPool of(Mongod mongod, Version version) {
+		return ImmutableMongodPool.of(mongod, version);
+	}
+
+	public static ImmutableMongodPool of(Mongod mongod, Version version, int size, Listener... listener) {
+		return of(mongod, version)
+			.withSize(size)
+			.withListener(Arrays.asList(listener));
+	}
+}
@@ -27,6 +27,7 @@ import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
 import de.flapdoodle.embed.mongo.types.DatabaseDir;
 import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.types.ProcessArguments;
+import de.flapdoodle.embed.process.types.ProcessWorkingDir;
 import de.flapdoodle.os.Platform;
 import de.flapdoodle.reverse.State;
 import de.flapdoodle.reverse.StateID;
@@ -73,6 +74,11 @@ public abstract class MongodProcessArguments implements CommandProcessArguments<
 		return StateID.of(Net.class);
 	}
 
+	@Value.Default
+	public StateID<ProcessWorkingDir> processWorkingDir() {
+		return StateID.of(ProcessWorkingDir.class);
+	}
+
 	@Value.Default
 	public StateID<DatabaseDir> databaseDir() {
 		return StateID.of(DatabaseDir.class);
@@ -81,7 +87,7 @@ public abstract class MongodProcessArguments implements CommandProcessArguments<
 	@Override
 	@Value.Auxiliary
 	public Set<StateID<?>> sources() {
-		return StateID.setOf(arguments(), platform(), version(), net(), databaseDir());
+		return StateID.setOf(arguments(), platform(), version(), net(), databaseDir(), processWorkingDir());
 	}
 
 	@Override
@@ -91,7 +97,7 @@ public abstract class MongodProcessArguments implements CommandProcessArguments<
 		Version version = lookup.of(version());
 		Preconditions.checkArgument(version instanceof IFeatureAwareVersion,"invalid type: %s does not implement %s",version, IFeatureAwareVersion.class);
 		IFeatureAwareVersion featureAwareVersion = (IFeatureAwareVersion) version;
-		Net net = lookup.of(net());
+		Net net = lookup.of(net()).withUnixSocketIn(platform, lookup.of(processWorkingDir()).value());
 		DatabaseDir databaseDir=lookup.of(databaseDir());
 
 		List<String> commandLine = arguments.asArguments(platform, featureAwareVersion, net, databaseDir);
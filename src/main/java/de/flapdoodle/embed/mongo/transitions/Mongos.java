@@ -24,12 +24,18 @@ import de.flapdoodle.embed.mongo.commands.MongosArguments;
 import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.mongo.packageresolver.Command;
 import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
 import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.Transition;
 import de.flapdoodle.reverse.TransitionWalker;
 import de.flapdoodle.reverse.Transitions;
 import de.flapdoodle.reverse.transitions.Start;
 import org.immutables.value.Value;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 @Value.Immutable
 public class Mongos implements Environment, WorkspaceDefaults, VersionAndPlatform, ProcessDefaults, CommandName, ExtractFileSet {
 	public Transitions transitions(de.flapdoodle.embed.process.distribution.Version version) {
@@ -42,7 +48,7 @@ public class Mongos implements Environment, WorkspaceDefaults, VersionAndPlatfor
 			.addAll(
 				Start.to(Command.class).initializedWith(Command.MongoS).withTransitionLabel("provide Command"),
 				Start.to(de.flapdoodle.embed.process.distribution.Version.class).initializedWith(version),
-				Start.to(Net.class).providedBy(Net::defaults),
+				net(),
 
 				mongosArguments(),
 				mongosProcessArguments(),
@@ -50,6 +56,14 @@ public class Mongos implements Environment, WorkspaceDefaults, VersionAndPlatfor
 			);
 	}
 
+	/**
+	 * use {@link PortAllocator#reservedNet()} for ports which are reserved across parallel test jvms
+	 */
+	@Value.Default
+	public Transition<Net> net() {
+		return Start.to(Net.class).providedBy(Net::defaults);
+	}
+
 	public Start<MongosArguments> mongosArguments() {
 		return Start.to(MongosArguments.class).initializedWith(MongosArguments.defaults());
 	}
@@ -64,10 +78,29 @@ public class Mongos implements Environment, WorkspaceDefaults, VersionAndPlatfor
 		return MongosStarter.withDefaults();
 	}
 
+	/**
+	 * how often mongos is started again if the port picked by {@link PortAllocator#reservedNet()} is already in use
+	 */
+	@Value.Default
+	public int portConflictRetries() {
+		return 3;
+	}
+
 	public TransitionWalker.ReachedState<RunningMongosProcess> start(Version version) {
-		return transitions(version)
+		return start(version, new Listener[0]);
+	}
+
+	public TransitionWalker.ReachedState<RunningMongosProcess> start(Version version, Listener... listener) {
+		return PortConflictRetry.start(withRetryListener -> transitions(version)
 			.walker()
-			.initState(StateID.of(RunningMongosProcess.class));
+			.initState(StateID.of(RunningMongosProcess.class), withRetryListener), Arrays.asList(listener), portConflictRetries());
+	}
+
+	/**
+	 * runs the blocking start on the executor, each start occupies one executor thread until it is done
+	 */
+	public CompletableFuture<TransitionWalker.ReachedState<RunningMongosProcess>> startAsync(Version version, Executor executor, Listener... listener) {
+		return AsyncStart.start(() -> start(version, listener), executor);
 	}
 
 	public static ImmutableMongos instance() {
@@ -26,6 +26,7 @@ import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
 import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.types.ProcessArguments;
+import de.flapdoodle.embed.process.types.ProcessWorkingDir;
 import de.flapdoodle.os.Platform;
 import de.flapdoodle.reverse.State;
 import de.flapdoodle.reverse.StateID;
@@ -72,10 +73,15 @@ public abstract class MongosProcessArguments implements CommandProcessArguments<
 		return StateID.of(Net.class);
 	}
 
+	@Value.Default
+	public StateID<ProcessWorkingDir> processWorkingDir() {
+		return StateID.of(ProcessWorkingDir.class);
+	}
+
 	@Override
 	@Value.Auxiliary
 	public Set<StateID<?>> sources() {
-		return StateID.setOf(arguments(), platform(), version(), net());
+		return StateID.setOf(arguments(), platform(), version(), net(), processWorkingDir());
 	}
 
 	@Override
@@ -85,7 +91,7 @@ public abstract class MongosProcessArguments implements CommandProcessArguments<
 		Version version = lookup.of(version());
 		Preconditions.checkArgument(version instanceof IFeatureAwareVersion,"invalid type: %s does not implement %s",version, IFeatureAwareVersion.class);
 		IFeatureAwareVersion featureAwareVersion = (IFeatureAwareVersion) version;
-		Net net = lookup.of(net());
+		Net net = lookup.of(net()).withUnixSocketIn(platform, lookup.of(processWorkingDir()).value());
 
 		List<String> commandLine = arguments.asArguments(platform, featureAwareVersion, net);
 		return State.of(ProcessArguments.of(commandLine));
@@ -22,6 +22,7 @@ package de.flapdoodle.embed.mongo.transitions;
 
 import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.process.config.SupportConfig;
+import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.types.RunningProcessFactory;
 import de.flapdoodle.os.Platform;
 import de.flapdoodle.reverse.StateID;
@@ -44,8 +45,8 @@ public abstract class MongosStarter extends MongoServerStarter<RunningMongosProc
 	}
 
 	@Override
-	protected RunningProcessFactory<RunningMongosProcess> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net) {
-		return RunningMongosProcess.factory(startupTimeout,supportConfig,platform,net);
+	protected RunningProcessFactory<RunningMongosProcess> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net, Version version) {
+		return RunningMongosProcess.factory(startupTimeout, supportConfig, platform, net, readinessCheck(), version);
 	}
 
 	public static ImmutableMongosStarter.Builder builder() {
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.util.Threads;
+import de.flapdoodle.embed.process.archives.*;
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.config.store.Package;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import de.flapdoodle.embed.process.types.Archive;
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.StateLookup;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.naming.HasLabel;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.immutables.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * extracts the entries of {@link Package#fileSet()} into a directory shared by all packages of the same archive:
+ * the archive is decompressed once as a stream, entries are written in parallel and recorded in a manifest,
+ * so other commands of the same archive (e.g. mongoimport and mongodump) only extract what is missing
+ * <p>
+ * not used by default, e.g. use {@code Mongod.instance().withExtractPackage(ParallelExtractPackage.withDefaults())}
+ */
+@Value.Immutable
+public abstract class ParallelExtractPackage implements Transition<ExtractedFileSet>, HasLabel {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelExtractPackage.class);
+
+	static final String MANIFEST = "manifest.properties";
+	// entries read ahead of the writers, larger entries are written while reading the archive
+	private static final int MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
+	private static final int MAX_BUFFERED_ENTRY_SIZE = 8 * 1024 * 1024;
+	private static final ConcurrentMap<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+	@Override
+	@Value.Auxiliary
+	public String transitionLabel() {
+		return "Extract package (parallel)";
+	}
+
+	@Override
+	@Value.Default
+	public StateID<ExtractedFileSet> destination() {
+		return StateID.of(ExtractedFileSet.class);
+	}
+
+	@Value.Default
+	public StateID<Package> distPackage() {
+		return StateID.of(Package.class);
+	}
+
+	@Value.Default
+	public StateID<Archive> archive() {
+		return StateID.of(Archive.class);
+	}
+
+	@Value.Default
+	public StateID<PersistentDir> persistentDir() {
+		return StateID.of(PersistentDir.class);
+	}
+
+	@Value.Default
+	public int parallelism() {
+		return Math.max(2, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Override
+	@Value.Auxiliary
+	public Set<StateID<?>> sources() {
+		return StateID.setOf(distPackage(), archive(), persistentDir());
+	}
+
+	@Override
+	public State<ExtractedFileSet> result(StateLookup lookup) {
+		Package distPackage = lookup.of(distPackage());
+		Path archive = lookup.of(archive()).value();
+		PersistentDir persistentDir = lookup.of(persistentDir());
+
+		try {
+			Path directory = extractionDir(persistentDir, archive);
+			return State.of(extract(directory, archive, distPackage.archiveType(), distPackage.fileSet(), parallelism()));
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not extract " + archive, iox);
+		}
+	}
+
+	static ExtractedFileSet extract(Path directory, Path archive, ArchiveType archiveType, FileSet fileSet, int parallelism) throws IOException {
+		Files.createDirectories(directory);
+		Object inJvmLock = LOCKS.computeIfAbsent(directory.toAbsolutePath().normalize(), it -> new Object());
+		synchronized (inJvmLock) {
+			try (FileChannel channel = FileChannel.open(directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock ignore = channel.lock()) {
+
+				Properties manifest = readManifest(directory);
+				List<FileSet.Entry> missing = new ArrayList<>();
+				for (FileSet.Entry entry : fileSet.entries()) {
+					if (!findInManifest(manifest, entry).isPresent()) {
+						missing.add(entry);
+					}
+				}
+
+				if (!missing.isEmpty()) {
+					LOGGER.info("extract {} entries of {} into {}", missing.size(), archive, directory);
+					extractMissing(directory, archive, archiveType, missing, manifest, parallelism);
+					writeManifest(directory, manifest);
+				}
+
+				return extractedFileSet(directory, fileSet, manifest);
+			}
+		}
+	}
+
+	private static void extractMissing(Path directory, Path archive, ArchiveType archiveType, List<FileSet.Entry> missing,
+		Properties manifest, int parallelism) throws IOException {
+
+		ExecutorService writers = Executors.newFixedThreadPool(parallelism, Threads.daemonThreads("extract"));
+		Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+		List<Future<?>> writes = new ArrayList<>();
+		List<FileSet.Entry> left = new ArrayList<>(missing);
+
+		ArchiveStream stream = archiveStream(archiveType, archive);
+		try {
+			ArchiveEntry archiveEntry;
+			while (!left.isEmpty() && (archiveEntry = stream.getNextEntry()) != null) {
+				if (archiveEntry.isDirectory() || !stream.canReadEntryData(archiveEntry)) {
+					continue;
+				}
+				String name = archiveEntry.getName();
+				Optional<FileSet.Entry> match = left.stream()
+					.filter(it -> it.matchingPattern().matcher(name).matches())
+					.findFirst();
+
+				if (match.isPresent()) {
+					left.remove(match.get());
+					boolean executable = match.get().type() == FileType.Executable;
+					Path target = target(directory, name);
+					long size = archiveEntry.getSize();
+
+					if (size < 0 || size > MAX_BUFFERED_ENTRY_SIZE) {
+						// unknown or too large to buffer, stream it to disk while reading the archive
+						write(target, stream.asStream(archiveEntry), executable);
+					} else {
+						// acquire before reading, so no more than MAX_BUFFERED_BYTES are held in memory
+						int bytes = (int) size;
+						bufferedBytes.acquire(bytes);
+						byte[] content;
+						try {
+							content = readFully(stream.asStream(archiveEntry), size);
+						}
+						catch (IOException | RuntimeException ex) {
+							bufferedBytes.release(bytes);
+							throw ex;
+						}
+						writes.add(writers.submit(() -> {
+							try {
+								write(target, new ByteArrayInputStream(content), executable);
+								return null;
+							}
+							finally {
+								bufferedBytes.release(bytes);
+							}
+						}));
+					}
+					manifest.setProperty(match.get().matchingPattern().pattern(), directory.relativize(target).toString().replace('\\', '/'));
+				}
+			}
+
+			for (Future<?> write : writes) {
+				write.get();
+			}
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", ix);
+		}
+		catch (ExecutionException ex) {
+			throw ex.getCause() instanceof IOException
+				? (IOException) ex.getCause()
+				: new IOException("could not write entry", ex.getCause());
+		}
+		finally {
+			stream.close();
+			writers.shutdownNow();
+		}
+
+		if (!left.isEmpty()) {
+			throw new IllegalArgumentException("entries not found in " + archive + ": " + left);
+		}
+	}
+
+	private static ExtractedFileSet extractedFileSet(Path directory, FileSet fileSet, Properties manifest) {
+		ImmutableExtractedFileSet.Builder builder = ExtractedFileSet.builder(directory);
+		for (FileSet.Entry entry : fileSet.entries()) {
+			Path file = directory.resolve(findInManifest(manifest, entry)
+				.orElseThrow(() -> new IllegalStateException("not extracted: " + entry)));
+			if (entry.type() == FileType.Executable) {
+				builder.executable(file);
+			} else {
+				builder.addLibraryFiles(file);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * the manifest maps the matching pattern of an entry to the extracted file
+	 */
+	private static Optional<String> findInManifest(Properties manifest, FileSet.Entry entry) {
+		return Optional.ofNullable(manifest.getProperty(entry.matchingPattern().pattern()));
+	}
+
+	private static Path target(Path directory, String entryName) throws IOException {
+		Path target = directory.resolve("files").resolve(entryName).normalize();
+		if (!target.startsWith(directory.resolve("files"))) {
+			throw new IOException("invalid entry name: " + entryName);
+		}
+		return target;
+	}
+
+	private static byte[] readFully(InputStream input, long size) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size : 8192);
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			content.write(buffer, 0, read);
+		}
+		return content.toByteArray();
+	}
+
+	private static void write(Path target, InputStream content, boolean executable) throws IOException {
+		Files.createDirectories(target.getParent());
+		Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			Files.copy(content, temp);
+			if (executable) {
+				temp.toFile().setExecutable(true);
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	static Properties readManifest(Path directory) throws IOException {
+		Properties manifest = new Properties();
+		Path file = directory.resolve(MANIFEST);
+		if (Files.exists(file)) {
+			try (InputStream input = Files.newInputStream(file)) {
+				manifest.load(input);
+			}
+			// files can be removed by someone else, extract them again
+			manifest.stringPropertyNames().stream()
+				.filter(name -> !Files.isRegularFile(directory.resolve(manifest.getProperty(name))))
+				.forEach(manifest::remove);
+		}
+		return manifest;
+	}
+
+	private static void writeManifest(Path directory, Properties manifest) throws IOException {
+		Path temp = directory.resolve(MANIFEST + "." + UUID.randomUUID() + ".tmp");
+		try {
+			try (OutputStream output = Files.newOutputStream(temp)) {
+				manifest.store(output, "extracted entries");
+			}
+			Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	static Path extractionDir(PersistentDir persistentDir, Path archive) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(archive.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update(("|" + Files.size(archive) + "|" + Files.getLastModifiedTime(archive).toMillis()).getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return persistentDir.value().resolve("extracted").resolve(hex.toString());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * embed.process only exposes {@link ExtractFileSet#extract(Path, Path, FileSet)}, which extracts into a given
+	 * directory in one go, and the archive adapters open their {@link ArchiveStream} in a protected method only:
+	 * there is no public factory, so each adapter is subclassed to read the archive entry by entry
+	 */
+	private static ArchiveStream archiveStream(ArchiveType archiveType, Path archive) throws IOException {
+		switch (archiveType) {
+			case TGZ:
+				return new TgzAdapter() {
+					ArchiveStream open() throws IOException {
+						return archiveStream(archive);
+					}
+				}.open();
+			case TBZ2:
+				return new Tbz2Adapter() {
+					ArchiveStream open() throws IOException {
+						return archiveStream(archive);
+					}
+				}.open();
+			case TXZ:
+				return new TxzAdapter() {
+					ArchiveStream open() throws IOException {
+						return archiveStream(archive);
+					}
+				}.open();
+			case ZIP:
+				return new ZipAdapter() {
+					ArchiveStream open() throws IOException {
+						return archiveStream(archive);
+					}
+				}.open();
+			case EXE:
+				return new SingleFileAdapter() {
+					ArchiveStream open() throws IOException {
+						return archiveStream(archive);
+					}
+				}.open();
+		}
+		throw new IllegalArgumentException("not supported: " + archiveType);
+	}
+
+
+	public static ImmutableParallelExtractPackage withDefaults() {
+		return builder().build();
+	}
+
+	public static ImmutableParallelExtractPackage.Builder builder() {
+		return ImmutableParallelExtractPackage.builder();
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.reverse.*;
+import de.flapdoodle.reverse.naming.HasLabel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * resolves all states needed for the destination concurrently, independent
+ * transitions run in parallel on the executor, the last transition and all
+ * listeners are handled by the default walker
+ */
+public class ParallelWalker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelWalker.class);
+
+	private final Transitions transitions;
+	private final Executor executor;
+
+	private ParallelWalker(Transitions transitions, Executor executor) {
+		this.transitions = transitions;
+		this.executor = executor;
+	}
+
+	public <D> TransitionWalker.ReachedState<D> initState(StateID<D> destination, Listener... listener) {
+		return initState(destination, Arrays.asList(listener));
+	}
+
+	public <D> TransitionWalker.ReachedState<D> initState(StateID<D> destination, Collection<Listener> listener) {
+		Map<StateID<?>, Transition<?>> transitionsByDestination = new LinkedHashMap<>();
+		transitions.transitions().forEach(it -> transitionsByDestination.put(it.destination(), it));
+
+		Transition<?> destinationTransition = transitionOf(transitionsByDestination, destination);
+
+		Resolver resolver = new Resolver(transitionsByDestination, executor);
+		destinationTransition.sources().forEach(resolver::resolve);
+		List<Prefetched<?>> prefetched = resolver.join();
+
+		Transitions withPrefetchedStates = transitions;
+		for (Prefetched<?> it : prefetched) {
+			withPrefetchedStates = withPrefetchedStates.replace(it);
+		}
+
+		try {
+			return withPrefetchedStates.walker().initState(destination, listener);
+		}
+		catch (RuntimeException rx) {
+			tearDownUnused(prefetched);
+			throw rx;
+		}
+	}
+
+	public static ParallelWalker of(Transitions transitions, Executor executor) {
+		return new ParallelWalker(transitions, executor);
+	}
+
+	private static Transition<?> transitionOf(Map<StateID<?>, Transition<?>> transitionsByDestination, StateID<?> destination) {
+		Transition<?> transition = transitionsByDestination.get(destination);
+		if (transition == null) {
+			throw new IllegalArgumentException("missing transition for " + StateID.asLabel(destination));
+		}
+		return transition;
+	}
+
+	private static void tearDownUnused(List<Prefetched<?>> prefetched) {
+		List<Prefetched<?>> reversed = new ArrayList<>(prefetched);
+		Collections.reverse(reversed);
+		reversed.forEach(Prefetched::tearDownIfUnused);
+	}
+
+	private static class Resolver {
+		private final Map<StateID<?>, Transition<?>> transitionsByDestination;
+		private final Executor executor;
+		private final Map<StateID<?>, CompletableFuture<State<?>>> futures = new LinkedHashMap<>();
+		private final Map<StateID<?>, Object> values = new ConcurrentHashMap<>();
+		private final Deque<Prefetched<?>> completed = new ConcurrentLinkedDeque<>();
+
+		private Resolver(Map<StateID<?>, Transition<?>> transitionsByDestination, Executor executor) {
+			this.transitionsByDestination = transitionsByDestination;
+			this.executor = executor;
+		}
+
+		private CompletableFuture<State<?>> resolve(StateID<?> stateID) {
+			CompletableFuture<State<?>> future = futures.get(stateID);
+			if (future == null) {
+				Transition<?> transition = transitionOf(transitionsByDestination, stateID);
+				CompletableFuture<?>[] sources = transition.sources().stream()
+					.map(this::resolve)
+					.toArray(CompletableFuture[]::new);
+
+				future = CompletableFuture.allOf(sources)
+					.thenApplyAsync(ignore -> execute(transition), executor);
+				futures.put(stateID, future);
+			}
+			return future;
+		}
+
+		private <T> State<?> execute(Transition<T> transition) {
+			State<T> state = transition.result(lookup());
+			values.put(transition.destination(), state.value());
+			completed.add(new Prefetched<>(transition, state));
+			return state;
+		}
+
+		private StateLookup lookup() {
+			return new StateLookup() {
+				@Override
+				public <D> D of(StateID<D> stateID) {
+					return stateID.type().cast(values.get(stateID));
+				}
+			};
+		}
+
+		private List<Prefetched<?>> join() {
+			try {
+				CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+				return new ArrayList<>(completed);
+			}
+			catch (CompletionException cx) {
+				// wait for everything still running, so nothing is missed by tear down
+				futures.values().forEach(it -> it.handle((value, ex) -> value).join());
+				tearDownUnused(new ArrayList<>(completed));
+
+				Throwable cause = cx.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	static class Prefetched<T> implements Transition<T>, HasLabel {
+		private final Transition<T> transition;
+		private final State<T> state;
+		private final AtomicBoolean used = new AtomicBoolean();
+
+		Prefetched(Transition<T> transition, State<T> state) {
+			this.transition = transition;
+			this.state = state;
+		}
+
+		@Override
+		public String transitionLabel() {
+			return Transition.asLabel(transition);
+		}
+
+		@Override
+		public StateID<T> destination() {
+			return transition.destination();
+		}
+
+		@Override
+		public Set<StateID<?>> sources() {
+			return transition.sources();
+		}
+
+		@Override
+		public State<T> result(StateLookup lookup) {
+			used.set(true);
+			return state;
+		}
+
+		private void tearDownIfUnused() {
+			if (used.compareAndSet(false, true)) {
+				try {
+					State.tearDown(state);
+				}
+				catch (RuntimeException rx) {
+					LOGGER.warn("tear down of " + StateID.asLabel(destination()) + " failed", rx);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.transitions.Derive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * reserves server ports across threads (in memory) and processes (lock files in the persistent dir)
+ * <p>
+ * each jvm starts searching in its own range, set system property {@value #FORK_NUMBER_PROPERTY}
+ * (e.g. to ${surefire.forkNumber}) to get a stable range per fork, a random one is used otherwise
+ */
+public abstract class PortAllocator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PortAllocator.class);
+
+	public static final String FORK_NUMBER_PROPERTY = "de.flapdoodle.embed.mongo.forkNumber";
+
+	// below the ephemeral port range of most systems
+	static final int FIRST_PORT = 20000;
+	static final int LAST_PORT = 31999;
+	static final int FORK_RANGE_SIZE = 200;
+
+	private static final int FORK_RANGES = (LAST_PORT - FIRST_PORT + 1) / FORK_RANGE_SIZE;
+	private static final Set<Integer> RESERVED = ConcurrentHashMap.newKeySet();
+	private static final ConcurrentMap<Integer, Path> LOCK_DIRS = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT = new AtomicInteger();
+	private static final int FORK_RANGE = forkRange();
+
+	private PortAllocator() {
+		// no instance
+	}
+
+	public interface Reservation extends AutoCloseable {
+		int port();
+
+		@Override
+		void close();
+	}
+
+	/**
+	 * net with a reserved port, the reservation is released on tear down
+	 */
+	public static Transition<Net> reservedNet() {
+		return Derive.given(PersistentDir.class).state(Net.class)
+			.with(persistentDir -> {
+				Net defaults = Net.defaults(0);
+				Reservation reservation = reserve(persistentDir, serverAddress(defaults));
+				return State.of(defaults.withReassignablePort(reservation.port()), ignore -> reservation.close());
+			});
+	}
+
+	public static Reservation reserve(PersistentDir persistentDir, InetAddress host) {
+		return reserve(persistentDir.value().resolve("ports"), host);
+	}
+
+	/**
+	 * another port for a server which could not use its reserved port, uses the lock files of the
+	 * reservation of the port in use (or the temp dir if this port was not reserved here)
+	 */
+	public static Reservation reserveInsteadOf(int portInUse, InetAddress host) {
+		Path lockDir = LOCK_DIRS.get(portInUse);
+		return reserve(lockDir != null
+			? lockDir
+			: Paths.get(System.getProperty("java.io.tmpdir")).resolve("embedmongo-ports"), host);
+	}
+
+	/**
+	 * same net with another reserved port, the reservation is released on tear down
+	 */
+	static State<Net> netInsteadOf(Net net) {
+		Reservation reservation = reserveInsteadOf(net.getPort(), serverAddress(net));
+		return State.of(net.withReassignablePort(reservation.port()), ignore -> reservation.close());
+	}
+
+	private static Reservation reserve(Path lockDir, InetAddress host) {
+		try {
+			Files.createDirectories(lockDir);
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not create " + lockDir, iox);
+		}
+
+		int rangeStart = FIRST_PORT + FORK_RANGE * FORK_RANGE_SIZE;
+		int offset = NEXT.getAndIncrement();
+
+		// own range first, then all others
+		for (int i = 0; i < FORK_RANGE_SIZE; i++) {
+			int port = rangeStart + Math.floorMod(offset + i, FORK_RANGE_SIZE);
+			Optional<Reservation> reservation = tryReserve(lockDir, host, port);
+			if (reservation.isPresent()) {
+				return reservation.get();
+			}
+		}
+		int range = LAST_PORT - FIRST_PORT + 1;
+		for (int i = 0; i < range; i++) {
+			int port = FIRST_PORT + Math.floorMod(rangeStart - FIRST_PORT + FORK_RANGE_SIZE + offset + i, range);
+			Optional<Reservation> reservation = tryReserve(lockDir, host, port);
+			if (reservation.isPresent()) {
+				return reservation.get();
+			}
+		}
+		throw new IllegalStateException("no free port in " + FIRST_PORT + "-" + LAST_PORT);
+	}
+
+	static Optional<Reservation> tryReserve(Path lockDir, InetAddress host, int port) {
+		if (!RESERVED.add(port)) {
+			return Optional.empty();
+		}
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(lockDir.resolve(port + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock lock = channel.tryLock();
+			if (lock != null && isFree(host, port)) {
+				LOCK_DIRS.put(port, lockDir);
+				return Optional.of(new LockedPort(port, channel, lock));
+			}
+		}
+		catch (IOException | OverlappingFileLockException ex) {
+			LOGGER.debug("could not lock port {}", port, ex);
+		}
+		close(channel);
+		RESERVED.remove(port);
+		return Optional.empty();
+	}
+
+	private static boolean isFree(InetAddress host, int port) {
+		try (ServerSocket socket = new ServerSocket(port, 1, host)) {
+			return true;
+		}
+		catch (IOException iox) {
+			return false;
+		}
+	}
+
+	private static InetAddress serverAddress(Net net) {
+		try {
+			return net.getServerAddress();
+		}
+		catch (IOException iox) {
+			throw new RuntimeException(iox);
+		}
+	}
+
+	private static int forkRange() {
+		String forkNumber = System.getProperty(FORK_NUMBER_PROPERTY);
+		if (forkNumber != null) {
+			try {
+				return Math.floorMod(Integer.parseInt(forkNumber.trim()), FORK_RANGES);
+			}
+			catch (NumberFormatException nx) {
+				LOGGER.warn("invalid {}: {}", FORK_NUMBER_PROPERTY, forkNumber);
+			}
+		}
+		return ThreadLocalRandom.current().nextInt(FORK_RANGES);
+	}
+
+	private static void close(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException iox) {
+				LOGGER.debug("could not close {}", channel, iox);
+			}
+		}
+	}
+
+	private static final class LockedPort implements Reservation {
+		private final int port;
+		private final FileChannel channel;
+		private final FileLock lock;
+
+		private LockedPort(int port, FileChannel channel, FileLock lock) {
+			this.port = port;
+			this.channel = channel;
+			this.lock = lock;
+		}
+
+		@Override
+		public int port() {
+			return port;
+		}
+
+		@Override
+		public synchronized void close() {
+			if (channel.isOpen()) {
+				try {
+					lock.release();
+				}
+				catch (IOException iox) {
+					LOGGER.debug("could not release lock of port {}", port, iox);
+				}
+				PortAllocator.close(channel);
+				LOCK_DIRS.remove(port);
+				RESERVED.remove(port);
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.reverse.Listener;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * starts again if the server could not bind its port and this port was picked by {@link PortAllocator#reservedNet()},
+ * the whole graph is walked again, so the {@link Net} state always holds the port the server listens on
+ */
+abstract class PortConflictRetry {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PortConflictRetry.class);
+
+	private PortConflictRetry() {
+		// no instance
+	}
+
+	static <T> TransitionWalker.ReachedState<T> start(Function<List<Listener>, TransitionWalker.ReachedState<T>> start,
+		Collection<Listener> listener, int retries) {
+
+		int retriesLeft = retries;
+		while (true) {
+			AtomicReference<Net> net = new AtomicReference<>();
+			List<Listener> listenerWithNet = new ArrayList<>(listener);
+			listenerWithNet.add(Listener.typedBuilder()
+				.onStateReached(StateID.of(Net.class), net::set)
+				.build());
+
+			try {
+				return start.apply(listenerWithNet);
+			}
+			catch (RuntimeException rx) {
+				Net used = net.get();
+				if (retriesLeft-- <= 0 || used == null || !used.isPortReassignable() || !RunningMongoProcess.isAddressAlreadyInUse(rx)) {
+					throw rx;
+				}
+				LOGGER.info("port {} already in use, start again with another port", used.getPort());
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * content piped into the stdin of a process, see {@link PublisherProcessInput} for reactive sources
+ */
+@FunctionalInterface
+public interface ProcessInput {
+	int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * write everything into stdin, stdin is closed afterwards
+	 */
+	void writeTo(OutputStream stdin) throws IOException;
+
+	/**
+	 * copies the stream with a fixed size buffer and closes it afterwards
+	 */
+	static ProcessInput of(InputStream source) {
+		return stdin -> {
+			try (InputStream input = source) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					stdin.write(buffer, 0, read);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * pipes a {@link Publisher} into stdin, only bufferedChunks are requested in advance
+ * so a slow process slows the publisher down (needs reactive-streams on the classpath)
+ */
+public final class PublisherProcessInput implements ProcessInput {
+
+	private static final Object COMPLETE = new Object();
+
+	private final Publisher<ByteBuffer> publisher;
+	private final int bufferedChunks;
+
+	private PublisherProcessInput(Publisher<ByteBuffer> publisher, int bufferedChunks) {
+		if (bufferedChunks < 1) throw new IllegalArgumentException("bufferedChunks < 1: " + bufferedChunks);
+		this.publisher = publisher;
+		this.bufferedChunks = bufferedChunks;
+	}
+
+	@Override
+	public void writeTo(OutputStream stdin) throws IOException {
+		BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(bufferedChunks + 1);
+		AtomicReference<Subscription> subscription = new AtomicReference<>();
+
+		publisher.subscribe(new Subscriber<ByteBuffer>() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				if (subscription.compareAndSet(null, s)) {
+					s.request(bufferedChunks);
+				} else {
+					s.cancel();
+				}
+			}
+
+			@Override
+			public void onNext(ByteBuffer chunk) {
+				chunks.offer(chunk);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				chunks.offer(t);
+			}
+
+			@Override
+			public void onComplete() {
+				chunks.offer(COMPLETE);
+			}
+		});
+
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try {
+			while (true) {
+				Object next = chunks.take();
+				if (next == COMPLETE) {
+					return;
+				}
+				if (next instanceof Throwable) {
+					throw new IOException("publisher failed", (Throwable) next);
+				}
+				ByteBuffer chunk = (ByteBuffer) next;
+				while (chunk.hasRemaining()) {
+					int length = Math.min(buffer.length, chunk.remaining());
+					chunk.get(buffer, 0, length);
+					stdin.write(buffer, 0, length);
+				}
+				subscription.get().request(1);
+			}
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+			cancel(subscription);
+			throw new InterruptedIOException("interrupted");
+		}
+		catch (IOException | RuntimeException ex) {
+			cancel(subscription);
+			throw ex;
+		}
+	}
+
+	private static void cancel(AtomicReference<Subscription> subscription) {
+		Subscription s = subscription.get();
+		if (s != null) {
+			s.cancel();
+		}
+	}
+
+	public static PublisherProcessInput of(Publisher<ByteBuffer> publisher) {
+		return of(publisher, 16);
+	}
+
+	public static PublisherProcessInput of(Publisher<ByteBuffer> publisher, int bufferedChunks) {
+		return new PublisherProcessInput(publisher, bufferedChunks);
+	}
+}
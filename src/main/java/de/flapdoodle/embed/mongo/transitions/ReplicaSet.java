@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.util.Threads;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.StateLookup;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Start;
+import org.immutables.value.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * starts a replica set with a number of mongod members in parallel, each with its own net and database dir
+ * <p>
+ * each member is a state ({@link #member(int)}), so it can be replaced or listened to like any other state
+ * <p>
+ * all members are started from the same {@link Mongod}: if its net has a fixed port, only the first member
+ * uses this port, the other members get a reserved port with the same bind ip
+ */
+@Value.Immutable
+public abstract class ReplicaSet {
+
+	private static final AtomicInteger REPLICA_SET_COUNTER = new AtomicInteger();
+
+	@Value.Parameter
+	protected abstract Mongod mongod();
+
+	@Value.Parameter
+	protected abstract Version version();
+
+	@Value.Default
+	public int members() {
+		return 3;
+	}
+
+	@Value.Default
+	public Storage replication() {
+		return Storage.of("rs0", 0);
+	}
+
+	/**
+	 * members are started with --configsvr, the replica set is initiated as config server replica set
+	 */
+	@Value.Default
+	public boolean configServer() {
+		return false;
+	}
+
+	/**
+	 * members are started with --shardsvr
+	 */
+	@Value.Default
+	public boolean shardServer() {
+		return false;
+	}
+
+	/**
+	 * max time to wait for a primary and all secondaries after replSetInitiate
+	 */
+	@Value.Default
+	public long electionTimeoutInMs() {
+		return 60_000L;
+	}
+
+	/**
+	 * listener for each member, see {@link #start(Listener...)} for the replica set states
+	 */
+	public abstract List<Listener> listener();
+
+	@Value.Check
+	protected void check() {
+		if (members() < 1) {
+			throw new IllegalArgumentException("members must be greater than 0: " + members());
+		}
+	}
+
+	/**
+	 * a member state for each member, all of them are needed for the {@link RunningReplicaSet} state
+	 */
+	@Value.Auxiliary
+	public Transitions transitions() {
+		Mongod member = ImmutableMongod.copyOf(mongod())
+			.withNet(netWithUniquePorts(mongod().net(), ConcurrentHashMap.newKeySet()))
+			.withMongodArguments(mapArguments(mongod().mongodArguments(), arguments -> MongodArguments.builder().from(arguments)
+				.replication(replication())
+				.isConfigServer(arguments.isConfigServer() || configServer())
+				.isShardServer(arguments.isShardServer() || shardServer())
+				.build()));
+
+		List<Transition<?>> transitions = new ArrayList<>();
+		for (int i = 0; i < members(); i++) {
+			transitions.add(Start.to(member(i)).with(() -> {
+				TransitionWalker.ReachedState<RunningMongodProcess> running = member.start(version(), listener());
+				return State.of(running.current(), ignore -> running.close());
+			}));
+		}
+		transitions.add(initiated());
+		return Transitions.from(transitions.toArray(new Transition<?>[0]));
+	}
+
+	/**
+	 * members are started in parallel
+	 */
+	@Value.Auxiliary
+	public TransitionWalker.ReachedState<RunningReplicaSet> start(Listener... listener) {
+		ExecutorService executor = Executors.newFixedThreadPool(members(), Threads.daemonThreads("replica-set-" + REPLICA_SET_COUNTER.incrementAndGet()));
+		try {
+			return ParallelWalker.of(transitions(), executor)
+				.initState(StateID.of(RunningReplicaSet.class), listener);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	public static StateID<RunningMongodProcess> member(int index) {
+		return StateID.of("member" + index, RunningMongodProcess.class);
+	}
+
+	public static ImmutableReplicaSet.Builder builder() {
+		return ImmutableReplicaSet.builder();
+	}
+
+	public static ImmutableReplicaSet of(Mongod mongod, Version version) {
+		return ImmutableReplicaSet.of(mongod, version);
+	}
+
+	public static ImmutableReplicaSet of(Mongod mongod, Version version, int members, Listener... listener) {
+		return of(mongod, version)
+			.withMembers(members)
+			.withListener(Arrays.asList(listener));
+	}
+
+	private Transition<RunningReplicaSet> initiated() {
+		Set<StateID<?>> members = new LinkedHashSet<>();
+		for (int i = 0; i < members(); i++) {
+			members.add(member(i));
+		}
+
+		return new Transition<RunningReplicaSet>() {
+			@Override
+			public StateID<RunningReplicaSet> destination() {
+				return StateID.of(RunningReplicaSet.class);
+			}
+
+			@Override
+			public Set<StateID<?>> sources() {
+				return members;
+			}
+
+			@Override
+			public State<RunningReplicaSet> result(StateLookup lookup) {
+				List<RunningMongodProcess> running = new ArrayList<>();
+				for (int i = 0; i < members(); i++) {
+					running.add(lookup.of(member(i)));
+				}
+				return State.of(RunningReplicaSet.initiate(replication().getReplSetName(), running, configServer(), version(),
+					electionTimeoutInMs()));
+			}
+		};
+	}
+
+	/**
+	 * a net with a port already used by another member is replaced by a net with a reserved port
+	 */
+	static Transition<Net> netWithUniquePorts(Transition<Net> net, Set<Integer> usedPorts) {
+		return new Transition<Net>() {
+			@Override
+			public StateID<Net> destination() {
+				return net.destination();
+			}
+
+			@Override
+			public Set<StateID<?>> sources() {
+				return net.sources();
+			}
+
+			@Override
+			public State<Net> result(StateLookup lookup) {
+				State<Net> state = net.result(lookup);
+				Net value = state.value();
+				if (usedPorts.add(value.getPort())) {
+					return State.of(value, ignore -> {
+						usedPorts.remove(value.getPort());
+						State.tearDown(state);
+					});
+				}
+
+				State<Net> reassigned;
+				try {
+					reassigned = PortAllocator.netInsteadOf(value);
+				}
+				catch (RuntimeException rx) {
+					State.tearDown(state);
+					throw rx;
+				}
+				int port = reassigned.value().getPort();
+				usedPorts.add(port);
+				return State.of(reassigned.value(), ignore -> {
+					usedPorts.remove(port);
+					State.tearDown(reassigned);
+					State.tearDown(state);
+				});
+			}
+		};
+	}
+
+	static Transition<MongodArguments> argumentsWithReplication(Transition<MongodArguments> arguments, Storage replication) {
+		return mapArguments(arguments, it -> MongodArguments.builder().from(it)
+			.replication(replication)
+			.build());
+	}
+
+	static Transition<MongodArguments> mapArguments(Transition<MongodArguments> arguments, UnaryOperator<MongodArguments> mapping) {
+		return new Transition<MongodArguments>() {
+			@Override
+			public StateID<MongodArguments> destination() {
+				return arguments.destination();
+			}
+
+			@Override
+			public Set<StateID<?>> sources() {
+				return arguments.sources();
+			}
+
+			@Override
+			public State<MongodArguments> result(StateLookup lookup) {
+				State<MongodArguments> state = arguments.result(lookup);
+				return State.of(mapping.apply(state.value()), ignore -> State.tearDown(state));
+			}
+		};
+	}
+}
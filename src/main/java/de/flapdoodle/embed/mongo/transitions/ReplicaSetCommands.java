@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
+import de.flapdoodle.embed.mongo.util.Backoff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * replica set commands over the wire protocol, so no driver is needed
+ */
+final class ReplicaSetCommands {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaSetCommands.class);
+
+	private static final int COMMAND_TIMEOUT_IN_MS = 1000;
+	private static final Backoff POLL = Backoff.between(5, 100);
+
+	private ReplicaSetCommands() {
+		// no instance
+	}
+
+	static Map<String, Object> runCommand(ServerAddress address, boolean useOpMsg, Map<String, Object> command) {
+		try {
+			return WireProtocol.runCommand(InetAddress.getByName(address.getHost()), address.getPort(), COMMAND_TIMEOUT_IN_MS, useOpMsg, "admin", command);
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not run " + command.keySet() + " on " + address, iox);
+		}
+	}
+
+	static void runCommandOrFail(ServerAddress address, boolean useOpMsg, Map<String, Object> command) {
+		Map<String, Object> reply = runCommand(address, useOpMsg, command);
+		if (!WireProtocol.isOk(reply)) {
+			throw new IllegalStateException(command.keySet() + " failed on " + address + ": " + reply);
+		}
+	}
+
+	static Optional<Map<String, Object>> hello(ServerAddress address, boolean useOpMsg) {
+		try {
+			Map<String, Object> reply = runCommand(address, useOpMsg, WireProtocol.document("hello", 1));
+			if (!WireProtocol.isOk(reply)) {
+				// hello is available since 4.4.2
+				reply = runCommand(address, useOpMsg, WireProtocol.document("isMaster", 1));
+			}
+			return WireProtocol.isOk(reply) ? Optional.of(reply) : Optional.empty();
+		}
+		catch (RuntimeException rx) {
+			LOGGER.debug("hello failed for {}", address, rx);
+			return Optional.empty();
+		}
+	}
+
+	static boolean isPrimary(Map<String, Object> helloReply) {
+		return Boolean.TRUE.equals(helloReply.get("isWritablePrimary")) || Boolean.TRUE.equals(helloReply.get("ismaster"));
+	}
+
+	static boolean isSecondary(Map<String, Object> helloReply) {
+		return Boolean.TRUE.equals(helloReply.get("secondary"));
+	}
+
+	static Map<String, Object> memberConfig(int id, ServerAddress address) {
+		return WireProtocol.document("_id", id, "host", address.getHost() + ":" + address.getPort());
+	}
+
+	static Map<String, Object> replicaSetConfig(String replSetName, List<Map<String, Object>> members) {
+		return WireProtocol.document("_id", replSetName, "members", members);
+	}
+
+	static Map<String, Object> singleMemberConfig(String replSetName, ServerAddress address) {
+		return replicaSetConfig(replSetName, Collections.singletonList(memberConfig(0, address)));
+	}
+
+	/**
+	 * polls with exponential backoff until ready, returns the elapsed time
+	 */
+	static <T> long await(String label, Supplier<T> state, Predicate<T> ready, long timeoutInMs) {
+		long started = System.currentTimeMillis();
+		AtomicReference<T> last = new AtomicReference<>();
+		Optional<T> result = POLL.await(() -> {
+			T current = state.get();
+			last.set(current);
+			return ready.test(current) ? Optional.of(current) : Optional.empty();
+		}, timeoutInMs);
+
+		long elapsed = System.currentTimeMillis() - started;
+		if (result.isPresent()) {
+			LOGGER.info("{} after {}ms", label, elapsed);
+			return elapsed;
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			throw new RuntimeException("interrupted while waiting until " + label);
+		}
+		throw new IllegalStateException("not " + label + " after " + elapsed + "ms: " + last.get());
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.immutables.value.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * single node replica set started from a database dir template which is initiated once for each version and replica set name
+ * <p>
+ * the member address is part of the replica set config, so each clone is moved to its own address with a forced reconfig,
+ * which is much cheaper than replSetInitiate on an empty database dir
+ */
+@Value.Immutable
+public abstract class ReplicaSetTemplate {
+
+	@Value.Parameter
+	public abstract Storage replication();
+
+	@Value.Default
+	protected Mongod mongod() {
+		return Mongod.instance();
+	}
+
+	@Value.Default
+	public long electionTimeoutInMs() {
+		return 30_000L;
+	}
+
+	@Value.Auxiliary
+	public Mongod member(Version version) {
+		boolean useOpMsg = WireProtocol.supportsOpMsg(version);
+		Mongod member = ImmutableMongod.copyOf(mongod())
+			.withMongodArguments(ReplicaSet.argumentsWithReplication(mongod().mongodArguments(), replication()));
+
+		return ImmutableMongod.copyOf(member)
+			.withDatabaseDir(DatabaseDirTemplate.builder()
+				.name("replicaSet-" + replication().getReplSetName())
+				.populate(initiate(useOpMsg))
+				.mongod(member)
+				.build());
+	}
+
+	/**
+	 * moves the member to its new address and waits until it is primary
+	 */
+	@Value.Auxiliary
+	public Listener promoteToPrimary(Version version) {
+		boolean useOpMsg = WireProtocol.supportsOpMsg(version);
+		return Listener.typedBuilder()
+			.onStateReached(StateID.of(RunningMongodProcess.class), running -> {
+				ServerAddress address = running.getServerAddress();
+				boolean alreadyPrimary = ReplicaSetCommands.hello(address, useOpMsg)
+					.map(ReplicaSetCommands::isPrimary)
+					.orElse(false);
+
+				if (!alreadyPrimary) {
+					Map<String, Object> config = ReplicaSetCommands.singleMemberConfig(replication().getReplSetName(), address);
+					config.put("version", 2);
+					ReplicaSetCommands.runCommandOrFail(address, useOpMsg,
+						WireProtocol.document("replSetReconfig", config, "force", true));
+					awaitPrimary(address, useOpMsg);
+				}
+			})
+			.build();
+	}
+
+	@Value.Auxiliary
+	public TransitionWalker.ReachedState<RunningMongodProcess> start(Version version, Listener... listener) {
+		List<Listener> listeners = new ArrayList<>();
+		listeners.add(promoteToPrimary(version));
+		listeners.addAll(Arrays.asList(listener));
+		return member(version).start(version, listeners);
+	}
+
+	private Consumer<RunningMongodProcess> initiate(boolean useOpMsg) {
+		return running -> {
+			ServerAddress address = running.getServerAddress();
+			ReplicaSetCommands.runCommandOrFail(address, useOpMsg,
+				WireProtocol.document("replSetInitiate", ReplicaSetCommands.singleMemberConfig(replication().getReplSetName(), address)));
+			awaitPrimary(address, useOpMsg);
+		};
+	}
+
+	private void awaitPrimary(ServerAddress address, boolean useOpMsg) {
+		ReplicaSetCommands.await(address + " primary",
+			() -> ReplicaSetCommands.hello(address, useOpMsg).orElse(Collections.emptyMap()),
+			ReplicaSetCommands::isPrimary,
+			electionTimeoutInMs());
+	}
+
+	public static ImmutableReplicaSetTemplate of(Storage replication) {
+		return ImmutableReplicaSetTemplate.of(replication);
+	}
+
+	public static ImmutableReplicaSetTemplate.Builder builder() {
+		return ImmutableReplicaSetTemplate.builder();
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.MongoRestoreArguments;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.Listener;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.immutables.value.Value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * mongod started on a clone of a database dir which was restored from a dump only once for each
+ * version and dump content (dump directory or archive file)
+ */
+@Value.Immutable
+public abstract class RestoredDumpTemplate {
+
+	// content hash for each dump path, valid as long as no file did change
+	private static final ConcurrentMap<Path, ContentHash> CONTENT_HASHES = new ConcurrentHashMap<>();
+
+	@Value.Parameter
+	public abstract Path dump();
+
+	/**
+	 * dir or archive is set from {@link #dump()}
+	 */
+	@Value.Default
+	public MongoRestoreArguments restoreArguments() {
+		return MongoRestoreArguments.defaults();
+	}
+
+	@Value.Default
+	protected Mongod mongod() {
+		return Mongod.instance();
+	}
+
+	@Value.Default
+	protected MongoRestore mongoRestore() {
+		return MongoRestore.instance();
+	}
+
+	/**
+	 * sha-256 of all files of the dump and the restore arguments, the content hash is read again only if
+	 * path, size or modification time of any file of the dump did change
+	 */
+	@Value.Lazy
+	public String hash() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, restoreArguments().toString());
+			update(digest, contentHash(dump()));
+			return hex(digest.digest());
+		}
+		catch (IOException iox) {
+			throw new UncheckedIOException("could not hash " + dump(), iox);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Value.Auxiliary
+	public DatabaseDirTemplate databaseDirTemplate(Version version) {
+		return DatabaseDirTemplate.builder()
+			.name("restore")
+			.fingerprint(hash())
+			.populate(restore(version))
+			.mongod(mongod())
+			.build();
+	}
+
+	@Value.Auxiliary
+	public Mongod restored(Version version) {
+		return ImmutableMongod.copyOf(mongod())
+			.withDatabaseDir(databaseDirTemplate(version));
+	}
+
+	@Value.Auxiliary
+	public TransitionWalker.ReachedState<RunningMongodProcess> start(Version version, Listener... listener) {
+		return restored(version).start(version, listener);
+	}
+
+	private Consumer<RunningMongodProcess> restore(Version version) {
+		MongoRestoreArguments arguments = Files.isDirectory(dump())
+			? MongoRestoreArguments.builder().from(restoreArguments()).dir(dump().toAbsolutePath().toString()).build()
+			: MongoRestoreArguments.builder().from(restoreArguments()).archive(dump().toAbsolutePath().toString()).build();
+
+		return running -> {
+			try (TransitionWalker.ReachedState<ExecutedMongoRestoreProcess> executed = mongoRestore().transitions(version)
+				.replace(Start.to(MongoRestoreArguments.class).initializedWith(arguments))
+				.addAll(Start.to(ServerAddress.class).initializedWith(running.getServerAddress()))
+				.walker()
+				.initState(StateID.of(ExecutedMongoRestoreProcess.class))) {
+
+				if (executed.current().returnCode() != 0) {
+					throw new IllegalStateException("could not restore " + dump() + ", mongorestore exited with " + executed.current().returnCode());
+				}
+			}
+		};
+	}
+
+	private static String contentHash(Path dump) throws IOException, NoSuchAlgorithmException {
+		Path key = dump.toAbsolutePath().normalize();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(key)) {
+			files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+
+		StringBuilder stamp = new StringBuilder();
+		for (Path file : files) {
+			stamp.append(key.relativize(file)).append('|')
+				.append(Files.size(file)).append('|')
+				.append(Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS)).append('\n');
+		}
+
+		ContentHash cached = CONTENT_HASHES.get(key);
+		if (cached != null && cached.stamp.equals(stamp.toString())) {
+			return cached.hash;
+		}
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		byte[] buffer = new byte[ProcessInput.BUFFER_SIZE];
+		for (Path file : files) {
+			update(digest, key.relativize(file).toString().replace('\\', '/'));
+			try (InputStream input = Files.newInputStream(file)) {
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			}
+			digest.update((byte) 1);
+		}
+		String hash = hex(digest.digest());
+		CONTENT_HASHES.put(key, new ContentHash(stamp.toString(), hash));
+		return hash;
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	public static ImmutableRestoredDumpTemplate of(Path dump) {
+		return ImmutableRestoredDumpTemplate.of(dump);
+	}
+
+	public static ImmutableRestoredDumpTemplate.Builder builder() {
+		return ImmutableRestoredDumpTemplate.builder();
+	}
+
+	private static final class ContentHash {
+		private final String stamp;
+		private final String hash;
+
+		private ContentHash(String stamp, String hash) {
+			this.stamp = stamp;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * a running mongodump writing its archive to stdout, the archive is read from {@link #stream()}
+ */
+public final class RunningMongoDumpArchive {
+
+	private final ToolProcessStarter.Started started;
+	private final InputStream stream;
+
+	RunningMongoDumpArchive(ToolProcessStarter.Started started) {
+		this.started = started;
+		this.stream = new BufferedInputStream(started.process().getInputStream(), ProcessInput.BUFFER_SIZE);
+	}
+
+	/**
+	 * the archive, data is only produced as fast as it is read
+	 */
+	public InputStream stream() {
+		return stream;
+	}
+
+	/**
+	 * waits until mongodump is finished, the stream must be read completely before
+	 */
+	public int waitFor() {
+		return started.waitFor();
+	}
+
+	/**
+	 * pipes the whole archive (e.g. into mongorestore) and fails if mongodump fails
+	 */
+	public ProcessInput asProcessInput() {
+		return stdin -> {
+			ProcessInput.of(stream).writeTo(stdin);
+			int returnCode = waitFor();
+			if (returnCode != 0) {
+				throw new IOException("mongodump exited with " + returnCode);
+			}
+		};
+	}
+
+	void stop() {
+		if (started.process().isAlive()) {
+			started.destroy();
+		}
+		try {
+			stream.close();
+		}
+		catch (IOException ignore) {
+			// process is gone
+		}
+	}
+}
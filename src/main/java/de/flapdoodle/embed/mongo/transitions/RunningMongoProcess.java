@@ -22,27 +22,42 @@ package de.flapdoodle.embed.mongo.transitions;
 
 import de.flapdoodle.embed.mongo.commands.ServerAddress;
 import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.runtime.JsonLogEventParser;
+import de.flapdoodle.embed.mongo.runtime.LogEvents;
 import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
+import de.flapdoodle.embed.mongo.util.Backoff;
 import de.flapdoodle.embed.process.config.SupportConfig;
 import de.flapdoodle.embed.process.io.*;
 import de.flapdoodle.embed.process.runtime.ProcessControl;
 import de.flapdoodle.embed.process.runtime.Processes;
 import de.flapdoodle.embed.process.types.RunningProcessFactory;
 import de.flapdoodle.embed.process.types.RunningProcessImpl;
+import de.flapdoodle.os.OSType;
 import de.flapdoodle.os.Platform;
 import de.flapdoodle.types.Try;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public abstract class RunningMongoProcess extends RunningProcessImpl {
 
 	private static Logger LOGGER= LoggerFactory.getLogger(RunningMongodProcess.class);
 
+	static final String ADDRESS_ALREADY_IN_USE = "Address already in use";
+
+	private static final int PROBE_TIMEOUT_IN_MS = 1000;
+	private static final Backoff PROBE_POLL = Backoff.between(5, 100);
+	private static final Backoff EXIT_POLL = Backoff.between(1, 20);
+
 	private final String commandName;
 	private final SupportConfig supportConfig;
 	private final Platform platform;
@@ -50,6 +65,13 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 	private final int mongoProcessId;
 	private final InetAddress serverAddress;
 	private final int port;
+	private final Optional<Path> unixSocket;
+	private final LogEvents logEvents;
+	private final ProcessControl process;
+	private final long timeout;
+	private final boolean opMsgSupported;
+
+	private final List<AutoCloseable> closeOnStop = new CopyOnWriteArrayList<>();
 
 	private boolean shutDownCommandAlreadyExecuted=false;
 
@@ -63,7 +85,9 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 		Platform platform,
 		Net net,
 		StreamProcessor commandOutput,
-		int mongoProcessId
+		int mongoProcessId,
+		LogEvents logEvents,
+		boolean opMsgSupported
 	) {
 		super(process, pidFile, timeout, onStop);
 		this.commandName = commandName;
@@ -73,34 +97,99 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 		this.mongoProcessId = mongoProcessId;
 		this.serverAddress = Try.get(net::getServerAddress);
 		this.port = net.getPort();
+		this.unixSocket = net.getUnixSocket();
+		this.logEvents = logEvents;
+		this.process = process;
+		this.timeout = timeout;
+		this.opMsgSupported = opMsgSupported;
 	}
 
 	public ServerAddress getServerAddress() {
-		return ServerAddress.of(serverAddress, port);
+		ServerAddress address = ServerAddress.of(serverAddress, port);
+		return unixSocket.isPresent()
+			? ServerAddress.builder().from(address).unixSocket(unixSocket.get().toString()).build()
+			: address;
+	}
+
+	/**
+	 * unix domain socket, if enabled by {@link Net#isUnixSocket()}
+	 */
+	public Optional<Path> unixSocket() {
+		return unixSocket;
+	}
+
+	/**
+	 * structured log events, only available for versions with json logs (4.4+)
+	 */
+	public LogEvents logEvents() {
+		return logEvents;
+	}
+
+	/**
+	 * closed before the process is stopped, e.g. cached clients
+	 */
+	public void closeOnStop(AutoCloseable resource) {
+		closeOnStop.add(resource);
 	}
 
 	@Override
 	public int stop() {
 		try {
+			closeResources();
 			stopInternal();
 		} finally {
 			return super.stop();
 		}
 	}
 
+	/**
+	 * kills the process (SIGKILL) without shutdown, data files are left in an inconsistent state
+	 */
+	public int kill() {
+		try {
+			closeResources();
+			if (isAlive()) {
+				LOGGER.debug("kill "+commandName);
+				if (!sendSigKillToProcess() || !awaitExit(timeout)) {
+					LOGGER.warn("could not kill "+commandName+", stop instead");
+					stopInternal();
+				}
+			}
+		} finally {
+			return super.stop();
+		}
+	}
+
+	private void closeResources() {
+		for (AutoCloseable resource : closeOnStop) {
+			try {
+				resource.close();
+			}
+			catch (Exception ex) {
+				LOGGER.debug("could not close "+resource, ex);
+			}
+		}
+		closeOnStop.clear();
+	}
+
 	//	@Override
 	private void stopInternal() {
 		if (isAlive()) {
 			LOGGER.debug("try to stop "+commandName);
-			if (!shutDownCommandAlreadyExecuted && !sendStopToMongoInstance()) {
-				LOGGER.warn("could not stop "+commandName+" with db command, try next");
-				if (!sendKillToProcess()) {
+			if (shutDownCommandAlreadyExecuted) {
+				awaitExit(timeout);
+				return;
+			}
+			if (sendStopToMongoInstance() && awaitExit(timeout)) {
+				return;
+			}
+			LOGGER.warn("could not stop "+commandName+" with db command, try next");
+			if (!sendKillToProcess()) {
+				LOGGER.warn("could not stop "+commandName+", try next");
+				if (!sendTermToProcess()) {
 					LOGGER.warn("could not stop "+commandName+", try next");
-					if (!sendTermToProcess()) {
-						LOGGER.warn("could not stop "+commandName+", try next");
-						if (!tryKillToProcess()) {
-							LOGGER.warn("could not stop "+commandName+" the second time, try one last thing");
-						}
+					if (!tryKillToProcess()) {
+						LOGGER.warn("could not stop "+commandName+" the second time, try one last thing");
 					}
 				}
 			}
@@ -108,7 +197,22 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 	}
 
 	private long getProcessId() {
-		return mongoProcessId;
+		if (mongoProcessId > 0) {
+			return mongoProcessId;
+		}
+		Long pid = process.getPid();
+		return pid != null ? pid : -1;
+	}
+
+	protected boolean sendSigKillToProcess() {
+		if (getProcessId() <= 0) {
+			return false;
+		}
+		if (platform.operatingSystem().type() == OSType.Windows) {
+			return tryKillToProcess();
+		}
+		return ProcessControl.executeCommandLine(supportConfig, Arrays.asList("kill", "-9", "" + getProcessId()),
+			processControl -> {}, StreamToLineProcessor.wrap(commandOutput), true);
 	}
 
 	protected boolean sendKillToProcess() {
@@ -126,9 +230,27 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 			StreamToLineProcessor.wrap(commandOutput), getProcessId());
 	}
 
+	/**
+	 * tries the other protocol only if the command could not be sent, an error reply (e.g. unauthorized)
+	 * would not change, and newer servers just close the connection on the legacy protocol
+	 *
+	 * @return true if the command was sent and not answered with an error, without a reply the caller should
+	 * wait for the process to exit and kill it otherwise
+	 */
 	protected final boolean sendStopToMongoInstance() {
-		return Mongod.sendShutdownLegacy(serverAddress, port)
-			|| Mongod.sendShutdown(serverAddress, port);
+		Mongod.ShutdownResult result = Mongod.sendShutdownCommand(serverAddress, port, opMsgSupported);
+		if (result == Mongod.ShutdownResult.NOT_SENT) {
+			result = Mongod.sendShutdownCommand(serverAddress, port, !opMsgSupported);
+		}
+		return result == Mongod.ShutdownResult.SENT || result == Mongod.ShutdownResult.NO_REPLY;
+	}
+
+	/**
+	 * @return true if the process did exit before timeout
+	 */
+	protected final boolean awaitExit(long timeoutInMs) {
+		return EXIT_POLL.await(() -> process.isAlive() ? Optional.<Boolean>empty() : Optional.of(true), timeoutInMs)
+			.orElseGet(() -> !process.isAlive());
 	}
 
 	public void shutDownCommandAlreadyExecuted() {
@@ -136,41 +258,77 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 	}
 
 	interface InstanceFactory<T extends RunningMongoProcess> {
-		T create(ProcessControl process, Path pidFile, long timeout, Runnable closeAllOutputs, SupportConfig supportConfig, Platform platform, Net net, StreamProcessor commands, int pid);
+		T create(ProcessControl process, Path pidFile, long timeout, Runnable closeAllOutputs, SupportConfig supportConfig, Platform platform, Net net, StreamProcessor commands, int pid, LogEvents logEvents, boolean opMsgSupported);
 	}
 
 	static <T extends RunningMongoProcess> RunningProcessFactory<T> factory(InstanceFactory<T> instanceFactory, long startupTimeout, SupportConfig supportConfig, Platform platform, Net net) {
+		return factory(instanceFactory, startupTimeout, supportConfig, platform, net, ReadinessCheck.LOG_MESSAGE, true);
+	}
+
+	static <T extends RunningMongoProcess> RunningProcessFactory<T> factory(InstanceFactory<T> instanceFactory, long startupTimeout, SupportConfig supportConfig, Platform platform, Net net, ReadinessCheck readinessCheck, boolean opMsgSupported) {
 		return (process, processOutput, pidFile, timeout) -> {
 
 //			LogWatchStreamProcessor logWatch = new LogWatchStreamProcessor(successMessage(), knownFailureMessages(),
 //				StreamToLineProcessor.wrap(processOutput.output()));
 			LOGGER.trace("setup logWatch");
-			SuccessMessageLineListener logWatch = errorMessageAwareLogWatch();
+			StartupLogWatch logWatch = errorMessageAwareLogWatch();
+			LogEvents logEvents = new LogEvents();
 
 			LOGGER.trace("connect io");
-			ReaderProcessor output = Processors.connect(process.getReader(), new ListeningStreamProcessor(StreamToLineProcessor.wrap(processOutput.output()), logWatch::inspect));
-			ReaderProcessor error = Processors.connect(process.getError(), new ListeningStreamProcessor(StreamToLineProcessor.wrap(processOutput.error()), logWatch::inspect));
+			ReaderProcessor output = Processors.connect(process.getReader(),
+				new JsonLogEventParser(logWatch.listeningTo(StreamToLineProcessor.wrap(processOutput.output())), logEvents));
+			ReaderProcessor error = Processors.connect(process.getError(), logWatch.listeningTo(StreamToLineProcessor.wrap(processOutput.error())));
 			Runnable closeAllOutputs = () -> {
 				LOGGER.trace("ReaderProcessor.abortAll");
 				ReaderProcessor.abortAll(output, error);
 				LOGGER.trace("ReaderProcessor.abortAll done");
 			};
 
-			LOGGER.trace("waitForResult");
-			logWatch.waitForResult(startupTimeout);
-			LOGGER.trace("check if successMessageFound");
-			if (logWatch.successMessageFound()) {
-				LOGGER.trace("get processId");
-				int pid = Mongod.getMongodProcessId(logWatch.allLines(), -1);
+			boolean started;
+			int pid = -1;
+			if (readinessCheck == ReadinessCheck.WIRE_PROTOCOL) {
+				LOGGER.trace("waitForServer");
+				InetAddress serverAddress = Try.get(net::getServerAddress);
+				Optional<Integer> serverPid = waitForServer(process, logWatch, serverAddress, net.getPort(), startupTimeout);
+				started = serverPid.isPresent();
+				if (started) {
+					pid = serverPid.get() > 0
+						? serverPid.get()
+						: logWatch.processId();
+				}
+			} else {
+				LOGGER.trace("waitForResult");
+				logWatch.waitForResult(startupTimeout, process::isAlive);
+				LOGGER.trace("check if successMessageFound");
+				started = logWatch.successMessageFound();
+				if (started) {
+					LOGGER.trace("get processId");
+					pid = logWatch.processId();
+				}
+			}
+
+			if (started) {
+				LOGGER.trace("detach logWatch");
+				logWatch.detach();
 				LOGGER.trace("return RunningMongodProcess");
-				return instanceFactory.create(process, pidFile, timeout, closeAllOutputs, supportConfig, platform, net, processOutput.commands(), pid);
+				return instanceFactory.create(process, pidFile, timeout, closeAllOutputs, supportConfig, platform, net, processOutput.commands(), pid, logEvents, opMsgSupported);
 
 			} else {
+				if (readinessCheck == ReadinessCheck.WIRE_PROTOCOL && !process.isAlive()) {
+					// let the readers pass the last lines
+					logWatch.waitForResult(StartupLogWatch.EXIT_GRACE_PERIOD_IN_MS, process::isAlive);
+				}
+				boolean exited = logWatch.processExited() || !process.isAlive();
+
 				String failureFound = logWatch.errorMessage().isPresent()
 					? logWatch.errorMessage().get()
 					: "\n" +
 					"----------------------\n" +
-					"Hmm.. no failure or success message after "+startupTimeout+"ms .. \n" +
+					(exited
+						? "Hmm.. process exited without failure or success message .. \n"
+						: readinessCheck == ReadinessCheck.WIRE_PROTOCOL
+							? "Hmm.. no failure message and no server reachable after "+startupTimeout+"ms .. \n"
+							: "Hmm.. no failure or success message after "+startupTimeout+"ms .. \n") +
 					"...the cause must be somewhere in the process output:\n" +
 					"- 8<- - - - - - - - - -\n" +
 					logWatch.allLines()+
@@ -188,9 +346,77 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 		};
 	}
 
+	/**
+	 * @return pid of the reachable server (-1 if unknown), empty if the server did not come up
+	 */
+	private static Optional<Integer> waitForServer(ProcessControl process, StartupLogWatch logWatch, InetAddress serverAddress, int port, long startupTimeout) {
+		return PROBE_POLL.await(
+			() -> !logWatch.errorMessage().isPresent() && !logWatch.processExited() && process.isAlive(),
+			() -> probe(process, logWatch, serverAddress, port),
+			startupTimeout);
+	}
+
+	/**
+	 * without a pid from serverStatus (e.g. auth is enabled) the server is only taken as ours if our
+	 * process did log that it is waiting for connections
+	 */
+	private static Optional<Integer> probe(ProcessControl process, StartupLogWatch logWatch, InetAddress serverAddress, int port) {
+		try {
+			// isMaster over OP_QUERY is accepted by every server version
+			Map<String, Object> isMaster = WireProtocol.runCommand(serverAddress, port, PROBE_TIMEOUT_IN_MS, false, "admin",
+				WireProtocol.document("isMaster", 1));
+			if (WireProtocol.isOk(isMaster)) {
+				Optional<Integer> serverPid = serverProcessId(serverAddress, port, isMaster);
+				if (!serverPid.isPresent()) {
+					return logWatch.successMessageFound()
+						? Optional.of(-1)
+						: Optional.empty();
+				}
+				Long processPid = process.getPid();
+				// someone else is listening on this port, our process should fail soon
+				boolean otherServer = processPid != null && processPid.longValue() != serverPid.get();
+				if (!otherServer) {
+					return serverPid;
+				}
+			}
+		}
+		catch (IOException | RuntimeException ignore) {
+			// not ready yet
+		}
+		return Optional.empty();
+	}
+
+	private static Optional<Integer> serverProcessId(InetAddress serverAddress, int port, Map<String, Object> isMaster) {
+		try {
+			Map<String, Object> serverStatus = WireProtocol.runCommand(serverAddress, port, PROBE_TIMEOUT_IN_MS, WireProtocol.supportsOpMsg(isMaster), "admin",
+				WireProtocol.document("serverStatus", 1));
+			Object pid = serverStatus.get("pid");
+			return WireProtocol.isOk(serverStatus) && pid instanceof Number
+				? Optional.of(((Number) pid).intValue())
+				: Optional.empty();
+		}
+		catch (IOException | RuntimeException ix) {
+			// serverStatus needs authentication if auth is enabled
+			LOGGER.debug("could not get pid from serverStatus", ix);
+			return Optional.empty();
+		}
+	}
+
 	// VisibleForTesting
-	static SuccessMessageLineListener errorMessageAwareLogWatch() {
-		return SuccessMessageLineListener.of(successMessage(), knownFailureMessages(), "error");
+	static boolean isAddressAlreadyInUse(Throwable exception) {
+		for (Throwable it = exception; it != null; it = it.getCause()) {
+			if (it.getMessage() != null && it.getMessage().contains(ADDRESS_ALREADY_IN_USE)) {
+				return true;
+			}
+			if (it.getCause() == it) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	static StartupLogWatch errorMessageAwareLogWatch() {
+		return StartupLogWatch.of(successMessage(), knownFailureMessages(), "error");
 	}
 
 	private static List<String> successMessage() {
@@ -205,7 +431,7 @@ public abstract class RunningMongoProcess extends RunningProcessImpl {
 			"ERROR:(?<error>.*)",
 			"(?<error>error command line)",
 			"(?<error>Error parsing command line:.*)",
-			"(?<error>Address already in use)",
+			"(?<error>"+ADDRESS_ALREADY_IN_USE+")",
 			"(?<error>error while loading shared libraries:.*)",
 			"(?<error>SSLEAY32\\.dll was not found)",
 			"(?<error>LIBEAY32\\.dll was not found)",
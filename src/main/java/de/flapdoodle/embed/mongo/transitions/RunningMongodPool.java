@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.util.Threads;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class RunningMongodPool implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunningMongodPool.class);
+	private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+	// put into the queue on close, so that every waiting lease wakes up
+	private static final CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> CLOSED = new CompletableFuture<>();
+
+	private final Supplier<TransitionWalker.ReachedState<RunningMongodProcess>> startMongod;
+	private final Optional<Consumer<RunningMongodProcess>> reset;
+	private final ExecutorService executor;
+	private final BlockingQueue<CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>>> instances;
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private final Object lock = new Object();
+
+	RunningMongodPool(
+		Supplier<TransitionWalker.ReachedState<RunningMongodProcess>> startMongod,
+		Optional<Consumer<RunningMongodProcess>> reset,
+		int size
+	) {
+		this.startMongod = startMongod;
+		this.reset = reset;
+		this.executor = Executors.newFixedThreadPool(size, Threads.daemonThreads("mongod-pool-" + POOL_COUNTER.incrementAndGet()));
+		this.instances = new LinkedBlockingQueue<>();
+		for (int i = 0; i < size; i++) {
+			instances.add(startInBackground());
+		}
+	}
+
+	public Lease lease() {
+		try {
+			checkNotClosed();
+			CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> next = instances.take();
+			if (next == CLOSED) {
+				// for the next one waiting
+				instances.add(CLOSED);
+				throw new IllegalStateException("pool already closed");
+			}
+			return leaseOf(next);
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for a pooled mongod", ix);
+		}
+	}
+
+	private Lease leaseOf(CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> next) {
+		TransitionWalker.ReachedState<RunningMongodProcess> state;
+		try {
+			state = next.join();
+		}
+		catch (CompletionException cx) {
+			enqueue(this::startInBackground);
+			throw new RuntimeException("could not start mongod", cx.getCause());
+		}
+		if (closed.get()) {
+			stop(state);
+			throw new IllegalStateException("pool already closed");
+		}
+		return new Lease(state);
+	}
+
+	/**
+	 * stops all idle instances, an instance which is still starting is stopped as soon as it is started
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			executor.shutdown();
+		}
+		List<CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>>> idle = new ArrayList<>();
+		instances.drainTo(idle);
+		instances.add(CLOSED);
+
+		idle.forEach(next -> next.whenComplete((state, ex) -> {
+			if (state != null) {
+				stop(state);
+			}
+		}));
+	}
+
+	private void release(TransitionWalker.ReachedState<RunningMongodProcess> state) {
+		if (!closed.get() && reset.isPresent() && state.current().isAlive()) {
+			try {
+				reset.get().accept(state.current());
+				if (!enqueue(() -> CompletableFuture.completedFuture(state))) {
+					stop(state);
+				}
+				return;
+			}
+			catch (RuntimeException rx) {
+				LOGGER.warn("could not reset pooled mongod, replace it", rx);
+			}
+		}
+
+		if (!enqueue(() -> replaceInBackground(state))) {
+			stop(state);
+		}
+	}
+
+	/**
+	 * adds a new entry if the pool is not closed, closing and adding must not interleave
+	 * or the entry is never stopped (and the executor may be shut down already)
+	 */
+	private boolean enqueue(Supplier<CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>>> entry) {
+		synchronized (lock) {
+			if (closed.get()) {
+				return false;
+			}
+			instances.add(entry.get());
+			return true;
+		}
+	}
+
+	private static void stop(TransitionWalker.ReachedState<RunningMongodProcess> state) {
+		try {
+			state.close();
+		}
+		catch (RuntimeException rx) {
+			LOGGER.warn("could not stop pooled mongod", rx);
+		}
+	}
+
+	private CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> startInBackground() {
+		return CompletableFuture.supplyAsync(startMongod, executor);
+	}
+
+	private CompletableFuture<TransitionWalker.ReachedState<RunningMongodProcess>> replaceInBackground(TransitionWalker.ReachedState<RunningMongodProcess> state) {
+		return CompletableFuture.supplyAsync(() -> {
+			stop(state);
+			return startMongod.get();
+		}, executor);
+	}
+
+	private void checkNotClosed() {
+		if (closed.get()) {
+			throw new IllegalStateException("pool already closed");
+		}
+	}
+
+
+	public class Lease implements AutoCloseable {
+		private final TransitionWalker.ReachedState<RunningMongodProcess> state;
+		private final AtomicBoolean returned = new AtomicBoolean();
+
+		private Lease(TransitionWalker.ReachedState<RunningMongodProcess> state) {
+			this.state = state;
+		}
+
+		public RunningMongodProcess current() {
+			return state.current();
+		}
+
+		@Override
+		public void close() {
+			if (returned.compareAndSet(false, true)) {
+				release(state);
+			}
+		}
+	}
+}
@@ -21,7 +21,10 @@
 package de.flapdoodle.embed.mongo.transitions;
 
 import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.runtime.LogEvents;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
 import de.flapdoodle.embed.process.config.SupportConfig;
+import de.flapdoodle.embed.process.distribution.Version;
 import de.flapdoodle.embed.process.io.StreamProcessor;
 import de.flapdoodle.embed.process.runtime.ProcessControl;
 import de.flapdoodle.embed.process.types.RunningProcessFactory;
@@ -43,10 +46,30 @@ public class RunningMongosProcess extends RunningMongoProcess {
 		int mongodProcessId
 //		boolean withAuthEnabled
 	) {
-		super("mongos", process, pidFile, timeout, onStop, supportConfig, platform, net, commandOutput, mongodProcessId);
+		this(process, pidFile, timeout, onStop, supportConfig, platform, net, commandOutput, mongodProcessId, new LogEvents(), true);
+	}
+
+	public RunningMongosProcess(
+		ProcessControl process,
+		Path pidFile,
+		long timeout,
+		Runnable onStop,
+		SupportConfig supportConfig,
+		Platform platform,
+		Net net,
+		StreamProcessor commandOutput,
+		int mongodProcessId,
+		LogEvents logEvents,
+		boolean opMsgSupported
+	) {
+		super("mongos", process, pidFile, timeout, onStop, supportConfig, platform, net, commandOutput, mongodProcessId, logEvents, opMsgSupported);
 	}
 
 	public static RunningProcessFactory<RunningMongosProcess> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net) {
 		return RunningMongoProcess.factory(RunningMongosProcess::new, startupTimeout, supportConfig, platform, net);
 	}
+
+	public static RunningProcessFactory<RunningMongosProcess> factory(long startupTimeout, SupportConfig supportConfig, Platform platform, Net net, ReadinessCheck readinessCheck, Version version) {
+		return RunningMongoProcess.factory(RunningMongosProcess::new, startupTimeout, supportConfig, platform, net, readinessCheck, WireProtocol.supportsOpMsg(version));
+	}
 }
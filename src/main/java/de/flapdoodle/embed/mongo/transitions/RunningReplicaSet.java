@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
+import de.flapdoodle.embed.process.distribution.Version;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * an initiated replica set, the members are stopped by tear down of their states
+ */
+public class RunningReplicaSet {
+
+	private final String replSetName;
+	private final List<RunningMongodProcess> members;
+	private final boolean useOpMsg;
+
+	private RunningReplicaSet(String replSetName, List<RunningMongodProcess> members, boolean useOpMsg) {
+		this.replSetName = replSetName;
+		this.members = Collections.unmodifiableList(new ArrayList<>(members));
+		this.useOpMsg = useOpMsg;
+	}
+
+	public String replSetName() {
+		return replSetName;
+	}
+
+	public List<RunningMongodProcess> members() {
+		return members;
+	}
+
+	public List<ServerAddress> memberAddresses() {
+		return members.stream()
+			.map(RunningMongodProcess::getServerAddress)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * the member which is primary right now, may change after a failover
+	 */
+	public Optional<RunningMongodProcess> primary() {
+		return members.stream()
+			.filter(member -> member.isAlive() && hello(member).map(ReplicaSetCommands::isPrimary).orElse(false))
+			.findFirst();
+	}
+
+	public String connectionString() {
+		return "mongodb://" + memberAddresses().stream()
+			.map(ServerAddress::toString)
+			.collect(Collectors.joining(",")) + "/?replicaSet=" + replSetName;
+	}
+
+	static RunningReplicaSet initiate(
+		String replSetName,
+		List<RunningMongodProcess> members,
+		boolean configServer,
+		Version version,
+		long electionTimeoutInMs
+	) {
+		RunningReplicaSet replicaSet = new RunningReplicaSet(replSetName, members, WireProtocol.supportsOpMsg(version));
+		replicaSet.initiate(configServer);
+		replicaSet.awaitPrimaryAndSecondaries(electionTimeoutInMs);
+		return replicaSet;
+	}
+
+	private void initiate(boolean configServer) {
+		List<Map<String, Object>> memberConfigs = new ArrayList<>();
+		List<ServerAddress> addresses = memberAddresses();
+		for (int i = 0; i < addresses.size(); i++) {
+			memberConfigs.add(ReplicaSetCommands.memberConfig(i, addresses.get(i)));
+		}
+
+		Map<String, Object> config = ReplicaSetCommands.replicaSetConfig(replSetName, memberConfigs);
+		if (configServer) {
+			config.put("configsvr", true);
+		}
+		ReplicaSetCommands.runCommandOrFail(addresses.get(0), useOpMsg, WireProtocol.document("replSetInitiate", config));
+	}
+
+	private void awaitPrimaryAndSecondaries(long timeoutInMs) {
+		ReplicaSetCommands.await("replica set " + replSetName + " ready",
+			() -> members().stream()
+				.map(member -> hello(member).orElse(Collections.emptyMap()))
+				.collect(Collectors.toList()),
+			replies -> {
+				long primaries = replies.stream().filter(ReplicaSetCommands::isPrimary).count();
+				long secondaries = replies.stream().filter(ReplicaSetCommands::isSecondary).count();
+				return primaries == 1 && primaries + secondaries == replies.size();
+			},
+			timeoutInMs);
+	}
+
+	private Optional<Map<String, Object>> hello(RunningMongodProcess member) {
+		return ReplicaSetCommands.hello(member.getServerAddress(), useOpMsg);
+	}
+}
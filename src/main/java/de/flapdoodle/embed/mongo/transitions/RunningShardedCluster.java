@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.runtime.WireProtocol;
+import de.flapdoodle.embed.mongo.util.Threads;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class RunningShardedCluster implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunningShardedCluster.class);
+	private static final AtomicInteger CLUSTER_COUNTER = new AtomicInteger();
+
+	private final TransitionWalker.ReachedState<RunningReplicaSet> configServers;
+	private final List<TransitionWalker.ReachedState<RunningReplicaSet>> shards;
+	private final TransitionWalker.ReachedState<RunningMongosProcess> mongos;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private RunningShardedCluster(TransitionWalker.ReachedState<RunningReplicaSet> configServers, List<TransitionWalker.ReachedState<RunningReplicaSet>> shards,
+		TransitionWalker.ReachedState<RunningMongosProcess> mongos) {
+		this.configServers = configServers;
+		this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+		this.mongos = mongos;
+	}
+
+	public RunningReplicaSet configServers() {
+		return configServers.current();
+	}
+
+	public List<RunningReplicaSet> shards() {
+		return shards.stream()
+			.map(TransitionWalker.ReachedState::current)
+			.collect(Collectors.toList());
+	}
+
+	public RunningMongosProcess mongos() {
+		return mongos.current();
+	}
+
+	public String connectionString() {
+		return "mongodb://" + mongos().getServerAddress();
+	}
+
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true)) {
+			try {
+				mongos.close();
+			}
+			catch (RuntimeException rx) {
+				LOGGER.warn("could not stop mongos", rx);
+			}
+			List<TransitionWalker.ReachedState<RunningReplicaSet>> replicaSets = new ArrayList<>(shards);
+			replicaSets.add(configServers);
+			closeAll(replicaSets);
+		}
+	}
+
+	static RunningShardedCluster start(
+		Supplier<TransitionWalker.ReachedState<RunningReplicaSet>> startConfigServers,
+		IntFunction<TransitionWalker.ReachedState<RunningReplicaSet>> startShard,
+		int shardCount,
+		Function<RunningReplicaSet, TransitionWalker.ReachedState<RunningMongosProcess>> startMongos,
+		List<String> shardedDatabases,
+		Version version
+	) {
+		ExecutorService executor = Executors.newFixedThreadPool(shardCount + 1, Threads.daemonThreads("sharded-cluster-" + CLUSTER_COUNTER.incrementAndGet()));
+		List<TransitionWalker.ReachedState<RunningReplicaSet>> started = new ArrayList<>();
+		try {
+			CompletableFuture<TransitionWalker.ReachedState<RunningReplicaSet>> config = CompletableFuture.supplyAsync(startConfigServers, executor);
+			List<CompletableFuture<TransitionWalker.ReachedState<RunningReplicaSet>>> shardFutures = new ArrayList<>();
+			for (int i = 0; i < shardCount; i++) {
+				int index = i;
+				shardFutures.add(CompletableFuture.supplyAsync(() -> startShard.apply(index), executor));
+			}
+
+			RuntimeException failed = null;
+			List<CompletableFuture<TransitionWalker.ReachedState<RunningReplicaSet>>> all = new ArrayList<>(shardFutures);
+			all.add(0, config);
+			for (CompletableFuture<TransitionWalker.ReachedState<RunningReplicaSet>> future : all) {
+				try {
+					started.add(future.join());
+				}
+				catch (CompletionException cx) {
+					if (failed == null) {
+						failed = new RuntimeException("could not start sharded cluster", cx.getCause());
+					} else {
+						failed.addSuppressed(cx.getCause());
+					}
+				}
+			}
+			if (failed != null) {
+				throw failed;
+			}
+
+			TransitionWalker.ReachedState<RunningReplicaSet> configServers = started.get(0);
+			List<TransitionWalker.ReachedState<RunningReplicaSet>> shards = started.subList(1, started.size());
+
+			TransitionWalker.ReachedState<RunningMongosProcess> mongos = startMongos.apply(configServers.current());
+			RunningShardedCluster cluster = new RunningShardedCluster(configServers, shards, mongos);
+			try {
+				cluster.addShardsAndEnableSharding(shardedDatabases, WireProtocol.supportsOpMsg(version));
+				return cluster;
+			}
+			catch (RuntimeException rx) {
+				cluster.close();
+				started.clear();
+				throw rx;
+			}
+		}
+		catch (RuntimeException rx) {
+			closeAll(started);
+			throw rx;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private void addShardsAndEnableSharding(List<String> shardedDatabases, boolean useOpMsg) {
+		ServerAddress mongosAddress = mongos().getServerAddress();
+		for (RunningReplicaSet shard : shards()) {
+			String members = shard.memberAddresses().stream()
+				.map(ServerAddress::toString)
+				.collect(Collectors.joining(","));
+			ReplicaSetCommands.runCommandOrFail(mongosAddress, useOpMsg,
+				WireProtocol.document("addShard", shard.replSetName() + "/" + members));
+		}
+		for (String database : shardedDatabases) {
+			ReplicaSetCommands.runCommandOrFail(mongosAddress, useOpMsg, WireProtocol.document("enableSharding", database));
+		}
+	}
+
+	private static void closeAll(List<TransitionWalker.ReachedState<RunningReplicaSet>> replicaSets) {
+		replicaSets.parallelStream().forEach(replicaSet -> {
+			try {
+				replicaSet.close();
+			}
+			catch (RuntimeException rx) {
+				LOGGER.warn("could not stop replica set {}", replicaSet.current().replSetName(), rx);
+			}
+		});
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.commands.MongosArguments;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * config server replica set and shard replica sets are started in parallel, then mongos,
+ * then all shards are added and sharding is enabled for each database in {@link #shardedDatabases()}
+ * <p>
+ * all members of all replica sets are started from {@link #mongod()}, a fixed port of its net is used
+ * by one member only (see {@link ReplicaSet})
+ */
+@Value.Immutable
+public abstract class ShardedCluster {
+
+	@Value.Parameter
+	protected abstract Version version();
+
+	@Value.Default
+	protected Mongod mongod() {
+		return Mongod.instance();
+	}
+
+	@Value.Default
+	protected Mongos mongos() {
+		return Mongos.instance();
+	}
+
+	@Value.Default
+	public int shards() {
+		return 2;
+	}
+
+	@Value.Default
+	public int membersPerShard() {
+		return 1;
+	}
+
+	@Value.Default
+	public int configServerMembers() {
+		return 1;
+	}
+
+	@Value.Default
+	public String configReplSetName() {
+		return "configRs";
+	}
+
+	@Value.Default
+	public String shardReplSetNamePrefix() {
+		return "shardRs";
+	}
+
+	public abstract List<String> shardedDatabases();
+
+	@Value.Default
+	public long electionTimeoutInMs() {
+		return 60_000L;
+	}
+
+	@Value.Check
+	protected void check() {
+		if (shards() < 1 || membersPerShard() < 1 || configServerMembers() < 1) {
+			throw new IllegalArgumentException("shards, membersPerShard and configServerMembers must be greater than 0: "
+				+ shards() + ", " + membersPerShard() + ", " + configServerMembers());
+		}
+	}
+
+	@Value.Auxiliary
+	public RunningShardedCluster start() {
+		Mongod member = ImmutableMongod.copyOf(mongod())
+			.withNet(ReplicaSet.netWithUniquePorts(mongod().net(), ConcurrentHashMap.newKeySet()));
+
+		ImmutableReplicaSet configServers = ReplicaSet.of(member, version())
+			.withMembers(configServerMembers())
+			.withReplication(Storage.of(configReplSetName(), 0))
+			.withConfigServer(true)
+			.withElectionTimeoutInMs(electionTimeoutInMs());
+
+		ImmutableReplicaSet shard = ReplicaSet.of(member, version())
+			.withMembers(membersPerShard())
+			.withShardServer(true)
+			.withElectionTimeoutInMs(electionTimeoutInMs());
+
+		Function<RunningReplicaSet, TransitionWalker.ReachedState<RunningMongosProcess>> startMongos = config -> mongos()
+			.transitions(version())
+			.replace(Start.to(MongosArguments.class).initializedWith(MongosArguments.defaults()
+				.withConfigDB(config.memberAddresses().stream()
+					.map(Object::toString)
+					.collect(Collectors.joining(",")))
+				.withReplicaSet(config.replSetName())))
+			.walker()
+			.initState(StateID.of(RunningMongosProcess.class));
+
+		return RunningShardedCluster.start(
+			() -> configServers.start(),
+			index -> shard.withReplication(Storage.of(shardReplSetNamePrefix() + index, 0)).start(),
+			shards(),
+			startMongos,
+			shardedDatabases(),
+			version()
+		);
+	}
+
+	public static ImmutableShardedCluster.Builder builder() {
+		return ImmutableShardedCluster.builder();
+	}
+
+	public static ImmutableShardedCluster of(Version version) {
+		return ImmutableShardedCluster.of(version);
+	}
+}
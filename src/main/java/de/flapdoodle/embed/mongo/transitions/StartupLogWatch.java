@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.process.io.StreamProcessor;
+import de.flapdoodle.checks.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * watches the process output until the process is started, keeps only the last lines of the startup transcript
+ * and passes the output through without inspection after {@link #detach()}
+ */
+final class StartupLogWatch {
+
+	static final int DEFAULT_MAX_LINES = 1000;
+	static final long EXIT_CHECK_INTERVAL_IN_MS = 50;
+	static final long EXIT_GRACE_PERIOD_IN_MS = 1000;
+
+	private final List<Pattern> successPatterns;
+	private final List<Pattern> errorPatterns;
+	private final String errorMessageGroupName;
+	private final int maxLines;
+	private final ArrayDeque<String> lines;
+
+	private boolean successMessageFound = false;
+	private String errorMessage = null;
+	private int processId = -1;
+	private int streams = 0;
+	private int closedStreams = 0;
+	private boolean processExited = false;
+	private volatile boolean detached = false;
+
+	private StartupLogWatch(List<Pattern> successPatterns, List<Pattern> errorPatterns, String errorMessageGroupName, int maxLines) {
+		Preconditions.checkArgument(maxLines > 0, "maxLines must be greater than 0: %s", maxLines);
+		this.successPatterns = successPatterns;
+		this.errorPatterns = errorPatterns;
+		this.errorMessageGroupName = errorMessageGroupName;
+		this.maxLines = maxLines;
+		this.lines = new ArrayDeque<>(Math.min(maxLines, 64));
+	}
+
+	public synchronized void inspect(String line) {
+		if (detached) {
+			return;
+		}
+		if (lines.size() == maxLines) {
+			lines.removeFirst();
+		}
+		lines.addLast(line);
+
+		if (processId < 0 && line.contains("pid")) {
+			processId = Mongod.getMongodProcessId(line, -1);
+		}
+
+		for (Pattern pattern : successPatterns) {
+			if (pattern.matcher(line).find()) {
+				successMessageFound = true;
+			}
+		}
+		for (Pattern pattern : errorPatterns) {
+			Matcher matcher = pattern.matcher(line);
+			if (matcher.find()) {
+				errorMessage = matcher.group(errorMessageGroupName);
+			}
+		}
+		if (successMessageFound || errorMessage != null) {
+			notifyAll();
+		}
+	}
+
+	public synchronized void waitForResult(long timeout) {
+		waitForResult(timeout, () -> true);
+	}
+
+	/**
+	 * waits for a success or failure message, gives up if all streams are closed or shortly after the process is gone
+	 */
+	public synchronized void waitForResult(long timeout, BooleanSupplier processIsAlive) {
+		long deadline = System.currentTimeMillis() + timeout;
+		try {
+			while (!successMessageFound && errorMessage == null && !allStreamsClosed()) {
+				long now = System.currentTimeMillis();
+				if (!processExited && !processIsAlive.getAsBoolean()) {
+					// give the readers some time to pass the last lines
+					processExited = true;
+					deadline = Math.min(deadline, now + EXIT_GRACE_PERIOD_IN_MS);
+				}
+				long remaining = deadline - now;
+				if (remaining <= 0) {
+					break;
+				}
+				wait(Math.min(remaining, EXIT_CHECK_INTERVAL_IN_MS));
+			}
+		}
+		catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * true if the process was gone or all streams were closed before startup finished
+	 */
+	public synchronized boolean processExited() {
+		return !successMessageFound && (processExited || allStreamsClosed());
+	}
+
+	private boolean allStreamsClosed() {
+		return streams > 0 && closedStreams >= streams;
+	}
+
+	private synchronized void streamClosed() {
+		closedStreams++;
+		notifyAll();
+	}
+
+	public synchronized boolean successMessageFound() {
+		return successMessageFound;
+	}
+
+	public synchronized Optional<String> errorMessage() {
+		return Optional.ofNullable(errorMessage);
+	}
+
+	public synchronized int processId() {
+		return processId;
+	}
+
+	/**
+	 * the last lines of the startup transcript
+	 */
+	public synchronized String allLines() {
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * stop inspecting output lines, the startup transcript is kept
+	 */
+	public void detach() {
+		detached = true;
+	}
+
+	public boolean isDetached() {
+		return detached;
+	}
+
+	/**
+	 * splits the output into lines for {@link #inspect(String)} until detached, passes everything to delegate
+	 */
+	public synchronized StreamProcessor listeningTo(StreamProcessor delegate) {
+		streams++;
+		return new LineSplitter(delegate);
+	}
+
+	private final class LineSplitter implements StreamProcessor {
+		private final StreamProcessor delegate;
+		private final StringBuilder buffer = new StringBuilder();
+
+		private LineSplitter(StreamProcessor delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void process(String block) {
+			if (!detached) {
+				int start = 0;
+				int newLine;
+				while ((newLine = block.indexOf('\n', start)) != -1) {
+					buffer.append(block, start, newLine);
+					inspect(buffer.toString());
+					buffer.setLength(0);
+					start = newLine + 1;
+				}
+				buffer.append(block, start, block.length());
+			} else if (buffer.length() > 0) {
+				buffer.setLength(0);
+				buffer.trimToSize();
+			}
+			delegate.process(block);
+		}
+
+		@Override
+		public void onProcessed() {
+			if (!detached && buffer.length() > 0) {
+				inspect(buffer.toString());
+			}
+			buffer.setLength(0);
+			streamClosed();
+			delegate.onProcessed();
+		}
+	}
+
+	public static StartupLogWatch of(List<String> successMessages, List<String> errorMessages, String errorMessageGroupName) {
+		return of(successMessages, errorMessages, errorMessageGroupName, DEFAULT_MAX_LINES);
+	}
+
+	public static StartupLogWatch of(List<String> successMessages, List<String> errorMessages, String errorMessageGroupName, int maxLines) {
+		return new StartupLogWatch(
+			successMessages.stream().map(Pattern::compile).collect(Collectors.toList()),
+			errorMessages.stream().map(Pattern::compile).collect(Collectors.toList()),
+			errorMessageGroupName,
+			maxLines
+		);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.archives.ExtractedFileSet;
+import de.flapdoodle.embed.process.io.ProcessOutput;
+import de.flapdoodle.embed.process.io.Processors;
+import de.flapdoodle.embed.process.io.ReaderProcessor;
+import de.flapdoodle.embed.process.io.StreamToLineProcessor;
+import de.flapdoodle.embed.process.runtime.ProcessControl;
+import de.flapdoodle.embed.process.types.ProcessArguments;
+import de.flapdoodle.embed.process.types.ProcessEnv;
+import de.flapdoodle.embed.process.types.ProcessWorkingDir;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.StateLookup;
+import org.immutables.value.Value;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * starts a tool process like {@link de.flapdoodle.embed.process.transitions.Executer}
+ * but keeps stdin and stdout accessible
+ */
+abstract class ToolProcessStarter {
+
+	@Value.Default
+	public StateID<ExtractedFileSet> processExecutable() {
+		return StateID.of(ExtractedFileSet.class);
+	}
+
+	@Value.Default
+	public StateID<ProcessWorkingDir> processWorkingDir() {
+		return StateID.of(ProcessWorkingDir.class);
+	}
+
+	@Value.Default
+	public StateID<ProcessEnv> processEnv() {
+		return StateID.of(ProcessEnv.class);
+	}
+
+	@Value.Default
+	public StateID<ProcessArguments> arguments() {
+		return StateID.of(ProcessArguments.class);
+	}
+
+	@Value.Default
+	public StateID<ProcessOutput> processOutput() {
+		return StateID.of(ProcessOutput.class);
+	}
+
+	protected Set<StateID<?>> processSources() {
+		return StateID.setOf(processExecutable(), processWorkingDir(), processEnv(), arguments(), processOutput());
+	}
+
+	/**
+	 * stderr (and stdout if not captured) is passed to {@link ProcessOutput}
+	 */
+	protected static Started start(StateLookup lookup, ToolProcessStarter ids, boolean captureStdout) {
+		ExtractedFileSet fileSet = lookup.of(ids.processExecutable());
+		List<String> commandLine = new ArrayList<>();
+		commandLine.add(fileSet.executable().toFile().getAbsolutePath());
+		commandLine.addAll(lookup.of(ids.arguments()).value());
+		ProcessOutput processOutput = lookup.of(ids.processOutput());
+
+		ProcessBuilder processBuilder = ProcessControl.newProcessBuilder(commandLine, lookup.of(ids.processEnv()).value(), false)
+			.directory(lookup.of(ids.processWorkingDir()).value().toFile());
+		try {
+			Process process = processBuilder.start();
+			List<ReaderProcessor> readers = new ArrayList<>();
+			readers.add(Processors.connect(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8),
+				StreamToLineProcessor.wrap(processOutput.error())));
+			if (!captureStdout) {
+				readers.add(Processors.connect(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8),
+					processOutput.output()));
+			}
+			return new Started(process, readers);
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not start " + commandLine, iox);
+		}
+	}
+
+	static final class Started {
+		private final Process process;
+		private final List<ReaderProcessor> readers;
+
+		private Started(Process process, List<ReaderProcessor> readers) {
+			this.process = process;
+			this.readers = readers;
+		}
+
+		Process process() {
+			return process;
+		}
+
+		int waitFor() {
+			try {
+				int returnCode = process.waitFor();
+				for (ReaderProcessor reader : readers) {
+					reader.join();
+				}
+				return returnCode;
+			}
+			catch (InterruptedException ix) {
+				Thread.currentThread().interrupt();
+				destroy();
+				throw new RuntimeException("interrupted", ix);
+			}
+		}
+
+		void destroy() {
+			process.destroy();
+			ReaderProcessor.abortAll(readers.toArray(new ReaderProcessor[0]));
+		}
+	}
+}
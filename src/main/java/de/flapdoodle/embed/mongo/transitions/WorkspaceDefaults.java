@@ -22,7 +22,6 @@ package de.flapdoodle.embed.mongo.transitions;
 
 import de.flapdoodle.embed.mongo.types.DistributionBaseUrl;
 import de.flapdoodle.embed.process.io.directories.TempDir;
-import de.flapdoodle.embed.process.transitions.Directories;
 import de.flapdoodle.embed.process.transitions.InitTempDirectory;
 import de.flapdoodle.embed.process.types.ProcessWorkingDir;
 import de.flapdoodle.reverse.Transition;
@@ -41,7 +40,7 @@ public interface WorkspaceDefaults {
 	default Transition<ProcessWorkingDir> processWorkingDir() {
 		return Derive.given(TempDir.class)
 			.state(ProcessWorkingDir.class)
-			.with(Directories.deleteOnTearDown(
+			.with(BackgroundDirectories.deleteInBackgroundOnTearDown(
 				TempDir.createDirectoryWith("workingDir"),
 				ProcessWorkingDir::of)
 			);
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.util;
+
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * polls with exponential backoff, the wait time doubles from min to max after each check
+ */
+public final class Backoff {
+
+	private final long minInMs;
+	private final long maxInMs;
+
+	private Backoff(long minInMs, long maxInMs) {
+		if (minInMs < 1 || maxInMs < minInMs) {
+			throw new IllegalArgumentException("invalid backoff: " + minInMs + ".." + maxInMs);
+		}
+		this.minInMs = minInMs;
+		this.maxInMs = maxInMs;
+	}
+
+	public <T> Optional<T> await(Supplier<Optional<T>> check, long timeoutInMs) {
+		return await(() -> true, check, timeoutInMs);
+	}
+
+	/**
+	 * @return result of check, empty if keepWaiting is false, on timeout or if interrupted (interrupt flag is set again)
+	 */
+	public <T> Optional<T> await(BooleanSupplier keepWaiting, Supplier<Optional<T>> check, long timeoutInMs) {
+		long deadline = System.currentTimeMillis() + timeoutInMs;
+		long backoff = minInMs;
+		while (keepWaiting.getAsBoolean()) {
+			Optional<T> result = check.get();
+			if (result.isPresent()) {
+				return result;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+			try {
+				Thread.sleep(Math.min(backoff, remaining));
+			}
+			catch (InterruptedException ix) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			backoff = Math.min(backoff * 2, maxInMs);
+		}
+		return Optional.empty();
+	}
+
+	public static Backoff between(long minInMs, long maxInMs) {
+		return new Backoff(minInMs, maxInMs);
+	}
+}
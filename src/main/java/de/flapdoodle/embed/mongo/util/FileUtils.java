@@ -20,10 +20,15 @@
  */
 package de.flapdoodle.embed.mongo.util;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.FileVisitResult.CONTINUE;
 
@@ -32,6 +37,10 @@ import static java.nio.file.FileVisitResult.CONTINUE;
  */
 public class FileUtils {
 
+    private static final Path CP = Paths.get("/bin/cp");
+    private static final File DEV_NULL = new File("/dev/null");
+    private static final long REFLINK_TIMEOUT_IN_SECONDS = 60;
+
     /**
      * Copies a directory recursively.
      *
@@ -53,6 +62,96 @@ public class FileUtils {
         Files.walkFileTree(source, new DirectoryCopier(source, target));
     }
 
+    /**
+     * Clones a directory recursively into an empty target directory.
+     * Uses copy-on-write clones (reflinks) if the filesystem supports them,
+     * copies files in parallel otherwise.
+     * Hardlinks are not used, because a mongod writes its files in place.
+     *
+     * @param source The source directory.
+     * @param target The target directory.
+     */
+    public static void cloneDirectory(final Path source, final Path target) throws IOException {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(target);
+
+        if (!Files.isDirectory(source)) {
+            throw new IllegalArgumentException("Source must be a directory");
+        }
+
+        if (!Files.isDirectory(target)) {
+            throw new IllegalArgumentException("Target must be a directory");
+        }
+
+        if (!reflinkDirectory(source, target)) {
+            parallelCopyDirectory(source, target);
+        }
+    }
+
+    private static boolean reflinkDirectory(final Path source, final Path target) throws IOException {
+        if (!System.getProperty("os.name", "").startsWith("Linux") || !Files.isExecutable(CP)) {
+            return false;
+        }
+
+        Process process = new ProcessBuilder(CP.toString(), "-R", "--reflink=always", "--preserve=mode,timestamps",
+            source.toAbsolutePath() + "/.", target.toAbsolutePath().toString())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.to(DEV_NULL))
+            .start();
+
+        try {
+            if (process.waitFor(REFLINK_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                return true;
+            }
+            process.destroyForcibly();
+        }
+        catch (InterruptedException ix) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while cloning " + source, ix);
+        }
+
+        // clean up partial clone before falling back to copy
+        try (DirectoryStream<Path> content = Files.newDirectoryStream(target)) {
+            for (Path path : content) {
+                de.flapdoodle.embed.process.io.Files.deleteAll(path);
+            }
+        }
+        return false;
+    }
+
+    private static void parallelCopyDirectory(final Path source, final Path target) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                files.add(file);
+                return CONTINUE;
+            }
+        });
+
+        try {
+            files.parallelStream().forEach(file -> {
+                try {
+                    Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                catch (IOException iox) {
+                    throw new UncheckedIOException(iox);
+                }
+            });
+        }
+        catch (UncheckedIOException uiox) {
+            throw uiox.getCause();
+        }
+    }
+
     private static class DirectoryCopier extends SimpleFileVisitor<Path> {
         private final Path source;
         private final Path target;
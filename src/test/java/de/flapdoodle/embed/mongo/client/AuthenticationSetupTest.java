@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthenticationSetupTest {
+
+	private final ImmutableAuthenticationSetup setup = AuthenticationSetup.of(UsernamePassword.of("admin", "secret".toCharArray()))
+		.withEntries(
+			AuthenticationSetup.role("db", "col", "listColls").withActions("listCollections"),
+			AuthenticationSetup.user("db", UsernamePassword.of("user", "pwd".toCharArray())).withRoles("listColls")
+		);
+
+	@Test
+	void hashIsStableAndChangesWithContent() {
+		AuthenticationSetup same = AuthenticationSetup.of(UsernamePassword.of("admin", "secret".toCharArray()))
+			.withEntries(
+				AuthenticationSetup.role("db", "col", "listColls").withActions("listCollections"),
+				AuthenticationSetup.user("db", UsernamePassword.of("user", "pwd".toCharArray())).withRoles("listColls")
+			);
+
+		assertThat(setup.hash()).isEqualTo(same.hash());
+		assertThat(setup.hash()).isNotEqualTo(AuthenticationSetup.of(UsernamePassword.of("admin", "other".toCharArray())).hash());
+		assertThat(setup.hash()).isNotEqualTo(setup.withTestProfile(true).hash());
+	}
+
+	@Test
+	void testProfileLowersScramIterationCount() {
+		MongodArguments arguments = setup.withTestProfile(true).applyTo(MongodArguments.defaults(), Version.Main.V4_4);
+
+		assertThat(arguments.auth()).isTrue();
+		assertThat(arguments.params())
+			.containsEntry("scramIterationCount", "5000")
+			.containsEntry("scramSHA256IterationCount", "5000");
+
+		assertThat(setup.applyTo(MongodArguments.defaults(), Version.Main.V4_4).params()).isEmpty();
+		assertThat(setup.withTestProfile(true).applyTo(MongodArguments.defaults(), Version.Main.V3_6).params())
+			.containsOnlyKeys("scramIterationCount");
+	}
+}
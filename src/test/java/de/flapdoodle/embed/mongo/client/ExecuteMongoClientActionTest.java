@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCredential;
+import com.mongodb.client.MongoClient;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExecuteMongoClientActionTest {
+
+	@Test
+	public void clientIsReusedUntilProcessIsStopped() {
+		AtomicInteger created = new AtomicInteger();
+		SyncClientAdapter adapter = new SyncClientAdapter(MongoClientSettings.builder().build()) {
+			@Override
+			protected MongoClient client(ServerAddress serverAddress) {
+				created.incrementAndGet();
+				return super.client(serverAddress);
+			}
+
+			@Override
+			protected MongoClient client(ServerAddress serverAddress, MongoCredential credential) {
+				created.incrementAndGet();
+				return super.client(serverAddress, credential);
+			}
+		};
+
+		MongoClientAction ping = MongoClientAction.runCommand("admin", new Document("ping", 1));
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = Mongod.instance().start(Version.Main.PRODUCTION)) {
+			adapter.execute(running.current(), ping);
+			adapter.execute(running.current(), ping);
+			adapter.execute(running.current(), ping);
+		}
+		assertThat(created).hasValue(1);
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = Mongod.instance().start(Version.Main.PRODUCTION)) {
+			adapter.execute(running.current(), ping);
+		}
+		assertThat(created).hasValue(2);
+	}
+
+	@Test
+	public void batchRunsAllActionsAndCollectsFailures() {
+		ReactiveClientAdapter adapter = new ReactiveClientAdapter(MongoClientSettings.builder().build());
+		AtomicInteger succeeded = new AtomicInteger();
+
+		MongoClientAction ping = MongoClientAction.runCommand("admin", new Document("ping", 1))
+			.withOnResult(result -> succeeded.incrementAndGet());
+		MongoClientAction unknown = MongoClientAction.runCommand("admin", new Document("noSuchCommand", 1));
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = Mongod.instance().start(Version.Main.PRODUCTION)) {
+			assertThatThrownBy(() -> adapter.execute(running.current(), MongoClientAction.batch(Arrays.asList(ping, unknown, ping, unknown))))
+				.hasMessage("2 of 4 actions failed")
+				.hasCauseInstanceOf(RuntimeException.class);
+		}
+		assertThat(succeeded).hasValue(2);
+	}
+
+	@Test
+	public void asyncActionsCanBeChainedWithoutBlocking() {
+		ReactiveClientAdapter adapter = new ReactiveClientAdapter(MongoClientSettings.builder().build());
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = Mongod.instance().start(Version.Main.PRODUCTION)) {
+			CompletionStage<Document> chain = adapter.executeAsync(running.current(),
+					MongoClientAction.runCommand("test", new Document("create", "col")))
+				.thenCompose(ignore -> adapter.executeAsync(running.current(),
+					MongoClientAction.runCommand("test", new Document("listCollections", 1))));
+
+			Document collections = chain.toCompletableFuture().join();
+			assertThat(collections.get("ok", Double.class)).isEqualTo(1.0);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FixtureLoaderTest {
+
+	@Test
+	void loadsFixturesInBatchesAndCreatesIndexesAfterwards(@TempDir Path tempDir) throws IOException {
+		Path json = tempDir.resolve("people.json");
+		try (Writer writer = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < 2500; i++) {
+				writer.write("{\"_id\": " + i + ", \"name\": \"name-" + i + "\"}\n");
+			}
+		}
+		Path csv = tempDir.resolve("cities.csv");
+		Files.write(csv, "name,population\nBerlin,3645000\nHamburg,1841000\n".getBytes(StandardCharsets.UTF_8));
+
+		FixtureLoader loader = FixtureLoader.builder()
+			.batchSize(100)
+			.addFixtures(Fixture.of("test", "people", json).withIndexes(new Document("name", 1)))
+			.addFixtures(Fixture.of("test", "cities", csv))
+			.build();
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = Mongod.instance().start(Version.Main.PRODUCTION)) {
+			try (MongoClient client = MongoClients.create(new ConnectionString("mongodb://" + running.current().getServerAddress()))) {
+				assertThat(loader.load(client)).isEqualTo(2502L);
+
+				MongoCollection<Document> people = client.getDatabase("test").getCollection("people");
+				assertThat(people.countDocuments()).isEqualTo(2500L);
+				List<String> indexNames = new ArrayList<>();
+				people.listIndexes().forEach(index -> indexNames.add(index.getString("name")));
+				assertThat(indexNames).contains("name_1");
+
+				assertThat(client.getDatabase("test").getCollection("cities").find(new Document("name", "Berlin")).first())
+					.containsEntry("population", 3645000);
+			}
+		}
+	}
+}
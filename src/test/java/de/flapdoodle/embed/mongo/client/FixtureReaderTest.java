@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.client;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FixtureReaderTest {
+
+	@Test
+	void concatenatedJsonDocuments() throws IOException {
+		List<Document> documents = readAll(FixtureReader.json(new StringReader("{\"a\": 1}\n{\"a\": 2, \"b\": {\"$numberLong\": \"3\"}}\n")));
+
+		assertThat(documents).containsExactly(new Document("a", 1), new Document("a", 2).append("b", 3L));
+	}
+
+	@Test
+	void jsonArray() throws IOException {
+		List<Document> documents = readAll(FixtureReader.json(new StringReader("  [{\"a\": 1}, {\"a\": \"x\"}]")));
+
+		assertThat(documents).containsExactly(new Document("a", 1), new Document("a", "x"));
+		assertThat(readAll(FixtureReader.json(new StringReader("[]")))).isEmpty();
+	}
+
+	@Test
+	void csvWithHeaderQuotesAndNestedFields() throws IOException {
+		String csv = "name,address.city,count,ratio\r\n"
+			+ "\"Smith, \"\"J\"\"\",Berlin,12,0.5\r\n"
+			+ "\"multi\nline\",,9999999999,x\n";
+
+		List<Document> documents = readAll(FixtureReader.csv(new StringReader(csv)));
+
+		assertThat(documents).containsExactly(
+			new Document("name", "Smith, \"J\"").append("address", new Document("city", "Berlin")).append("count", 12).append("ratio", 0.5),
+			new Document("name", "multi\nline").append("address", new Document("city", "")).append("count", 9999999999L).append("ratio", "x")
+		);
+	}
+
+	@Test
+	void concatenatedBsonDocuments() throws IOException {
+		BasicOutputBuffer buffer = new BasicOutputBuffer();
+		DocumentCodec codec = new DocumentCodec();
+		for (int i = 0; i < 3; i++) {
+			try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+				codec.encode(writer, new Document("i", i), EncoderContext.builder().build());
+			}
+		}
+
+		List<Document> documents = readAll(FixtureReader.bson(new ByteArrayInputStream(buffer.toByteArray())));
+
+		assertThat(documents).containsExactly(new Document("i", 0), new Document("i", 1), new Document("i", 2));
+	}
+
+	private static List<Document> readAll(FixtureReader reader) throws IOException {
+		try (FixtureReader r = reader) {
+			List<Document> documents = new ArrayList<>();
+			while (r.hasNext()) {
+				documents.add(r.next());
+			}
+			return documents;
+		}
+	}
+}
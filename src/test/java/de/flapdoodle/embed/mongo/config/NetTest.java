@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.types.DatabaseDir;
+import de.flapdoodle.os.CommonOS;
+import de.flapdoodle.os.Platform;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NetTest {
+
+	private final Platform platform = Platform.detect(CommonOS.list());
+
+	@Test
+	void onlyAllocatedPortsAreReassignable() {
+		assertThat(Net.defaults().isPortReassignable()).isFalse();
+		assertThat(Net.defaults().withPort(12345).isPortReassignable()).isFalse();
+		assertThat(Net.defaults(12345).isPortReassignable()).isFalse();
+		assertThat(Net.defaults().withReassignablePort(12345).isPortReassignable()).isTrue();
+	}
+
+	@Test
+	void unixSocketIsDisabledByDefault() {
+		Net net = Net.of("localhost", 12345, false).withUnixSocketIn(platform, Paths.get("/tmp"));
+
+		assertThat(net.getUnixSocket()).isEmpty();
+		assertThat(arguments(net)).doesNotContain("--unixSocketPrefix");
+	}
+
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	void unixSocketIsPlacedInWorkingDir() {
+		Path workingDir = Paths.get("/tmp/working-dir");
+		Net net = Net.builder().from(Net.of("localhost", 12345, false))
+			.isUnixSocket(true)
+			.build()
+			.withUnixSocketIn(platform, workingDir);
+
+		assertThat(net.getUnixSocket()).contains(workingDir.resolve("mongodb-12345.sock"));
+		assertThat(arguments(net)).containsSubsequence("--unixSocketPrefix", workingDir.toString());
+		assertThat(net.withPort(12346).getUnixSocket()).contains(workingDir.resolve("mongodb-12346.sock"));
+	}
+
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	void tooLongSocketPathFallsBackToTcp() {
+		StringBuilder longPath = new StringBuilder("/tmp");
+		for (int i = 0; i < 10; i++) {
+			longPath.append("/directory").append(i);
+		}
+		Net net = Net.builder().from(Net.of("localhost", 12345, false))
+			.isUnixSocket(true)
+			.build()
+			.withUnixSocketIn(platform, Paths.get(longPath.toString()));
+
+		assertThat(net.getUnixSocket()).isEmpty();
+	}
+
+	private List<String> arguments(Net net) {
+		return MongodArguments.defaults().asArguments(platform, Version.Main.PRODUCTION, net, DatabaseDir.of(Paths.get("/tmp/db")));
+	}
+}
@@ -108,6 +108,38 @@ public class MongodAuthTest {
 		}
 	}
 
+	@Test
+	public void customRoleFromAuthenticationTemplate() {
+		String roleName = "listColls";
+		Version.Main version = Version.Main.V4_4;
+
+		SyncClientAdapter clientAdapter = new SyncClientAdapter(MongoClientSettings.builder().build());
+		AuthenticationSetup setup = AuthenticationSetup.of(UsernamePassword.of(USERNAME_ADMIN, PASSWORD_ADMIN.toCharArray()))
+			.withTestProfile(true)
+			.withEntries(
+				AuthenticationSetup.role(DB_TEST, COLL_TEST, roleName)
+					.withActions("listCollections"),
+				AuthenticationSetup.user(DB_TEST, UsernamePassword.of(USERNAME_NORMAL_USER, PASSWORD_NORMAL_USER.toCharArray())).withRoles(roleName, "readWrite")
+			);
+
+		Mongod mongod = Mongod.builder()
+			.mongodArguments(Start.to(MongodArguments.class).initializedWith(setup.applyTo(MongodArguments.defaults(), version)))
+			.databaseDir(ClientActions.authenticationTemplate(clientAdapter, DB_ADMIN, setup, version))
+			.build();
+
+		for (int i = 0; i < 2; i++) {
+			try (TransitionWalker.ReachedState<RunningMongodProcess> running = mongod.start(version, ClientActions.authenticatedShutdown(clientAdapter, setup))) {
+				final MongoCredential credentialNormalUser =
+					MongoCredential.createCredential(USERNAME_NORMAL_USER, DB_TEST, PASSWORD_NORMAL_USER.toCharArray());
+
+				try (final MongoClient clientNormalUser = mongoClient(getServerAddress(running), credentialNormalUser)) {
+					clientNormalUser.getDatabase(DB_TEST).getCollection(COLL_TEST).insertOne(new Document("key", "value"));
+					assertThat(clientNormalUser.getDatabase(DB_TEST).listCollectionNames().into(new ArrayList<>())).containsExactly(COLL_TEST);
+				}
+			}
+		}
+	}
+
 	@Test
 	@Disabled("readAnyDatabase is not assignable")
 	public void readAnyDatabaseRole() {
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import de.flapdoodle.embed.process.io.StreamProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonLogEventParserTest {
+
+	private static final String STARTUP = "{\"t\":{\"$date\":\"2023-03-01T10:00:00.000+01:00\"},\"s\":\"I\",  \"c\":\"CONTROL\",  \"id\":4615611, \"ctx\":\"initandlisten\",\"msg\":\"MongoDB starting\",\"attr\":{\"pid\":11026,\"port\":27017,\"dbPath\":\"/tmp/db\",\"architecture\":\"64-bit\",\"host\":\"box\"}}";
+	private static final String ACCEPTED = "{\"t\":{\"$date\":\"2023-03-01T10:00:01.000+01:00\"},\"s\":\"I\",  \"c\":\"NETWORK\",  \"id\":22943,   \"ctx\":\"listener\",\"msg\":\"Connection accepted\",\"attr\":{\"remote\":\"127.0.0.1:49000\",\"uuid\":\"9a0e\",\"connectionId\":1,\"connectionCount\":1}}";
+	private static final String SLOW_QUERY = "{\"t\":{\"$date\":\"2023-03-01T10:00:02.000+01:00\"},\"s\":\"I\",  \"c\":\"COMMAND\",  \"id\":51803,   \"ctx\":\"conn1\",\"msg\":\"Slow query\",\"attr\":{\"type\":\"command\",\"ns\":\"test.col\",\"command\":{\"find\":\"col\",\"filter\":{\"name\":\"a \\\"quoted\\\" \\u00e4\"}},\"planSummary\":\"COLLSCAN\",\"durationMillis\":123,\"ok\":1.5,\"flags\":[true,false,null]}}";
+	private static final String OTHER = "{\"t\":{\"$date\":\"2023-03-01T10:00:03.000+01:00\"},\"s\":\"I\",  \"c\":\"STORAGE\",  \"id\":22315,   \"ctx\":\"initandlisten\",\"msg\":\"Opening WiredTiger\",\"attr\":{\"config\":\"create\"}}";
+
+	@Test
+	void parseStartupEvent() {
+		LogEvent event = JsonLogEventParser.parse(STARTUP).get();
+
+		assertThat(event.type()).isEqualTo(LogEvent.Type.STARTUP);
+		assertThat(event.timestamp()).isEqualTo("2023-03-01T10:00:00.000+01:00");
+		assertThat(event.severity()).isEqualTo("I");
+		assertThat(event.component()).isEqualTo("CONTROL");
+		assertThat(event.id()).isEqualTo(4615611L);
+		assertThat(event.context()).isEqualTo("initandlisten");
+		assertThat(event.message()).isEqualTo("MongoDB starting");
+		assertThat(event.longAttribute("pid")).contains(11026L);
+		assertThat(event.stringAttribute("dbPath")).contains("/tmp/db");
+	}
+
+	@Test
+	void parseSlowQueryWithNestedAttributes() {
+		LogEvent event = JsonLogEventParser.parse(SLOW_QUERY).get();
+
+		assertThat(event.type()).isEqualTo(LogEvent.Type.SLOW_QUERY);
+		assertThat(event.stringAttribute("ns")).contains("test.col");
+		assertThat(event.longAttribute("durationMillis")).contains(123L);
+		assertThat(event.attribute("ok")).contains(1.5);
+		assertThat(event.attribute("command").get().toString()).isEqualTo("{find=col, filter={name=a \"quoted\" \u00e4}}");
+		assertThat(event.attribute("flags").get().toString()).isEqualTo("[true, false, null]");
+	}
+
+	@Test
+	void ignoreUnknownEventsAndTextLines() {
+		assertThat(JsonLogEventParser.parse(OTHER)).isEmpty();
+		assertThat(JsonLogEventParser.parse("Fri Apr 27 08:08:55 [initandlisten] MongoDB starting : pid=11026 port=12345")).isEmpty();
+		assertThat(JsonLogEventParser.parse("{\"broken\":")).isEmpty();
+	}
+
+	@Test
+	void publishEventsFromSplitBlocks() {
+		LogEvents events = new LogEvents();
+		List<LogEvent> received = new ArrayList<>();
+		StringBuilder passedThrough = new StringBuilder();
+		JsonLogEventParser testee = new JsonLogEventParser(collectInto(passedThrough), events);
+
+		String output = STARTUP + "\n" + OTHER + "\nsome text\n" + ACCEPTED + "\n";
+		testee.process(output.substring(0, 100));
+		try (LogEvents.Subscription ignore = events.subscribe(received::add)) {
+			testee.process(output.substring(100, 500));
+			testee.process(output.substring(500));
+			testee.onProcessed();
+		}
+
+		assertThat(passedThrough.toString()).isEqualTo(output);
+		assertThat(events.startup()).isPresent();
+		assertThat(events.startup().get().longAttribute("pid")).contains(11026L);
+		assertThat(received).extracting(LogEvent::type)
+			.containsExactly(LogEvent.Type.STARTUP, LogEvent.Type.CONNECTION_ACCEPTED);
+	}
+
+	@Test
+	void skipLinesWithoutSubscribersAfterStartup() {
+		LogEvents events = new LogEvents();
+		List<LogEvent> received = new ArrayList<>();
+		JsonLogEventParser testee = new JsonLogEventParser(collectInto(new StringBuilder()), events);
+
+		testee.process(STARTUP + "\n" + ACCEPTED.substring(0, 50));
+		events.subscribe(received::add);
+		testee.process(ACCEPTED.substring(50) + "\n" + ACCEPTED + "\n");
+
+		assertThat(received).hasSize(1);
+	}
+
+	private static StreamProcessor collectInto(StringBuilder sb) {
+		return new StreamProcessor() {
+			@Override
+			public void process(String block) {
+				sb.append(block);
+			}
+
+			@Override
+			public void onProcessed() {
+			}
+		};
+	}
+}
@@ -22,6 +22,14 @@ package de.flapdoodle.embed.mongo.runtime;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 //CHECKSTYLE:OFF
@@ -38,4 +46,79 @@ public class TestMongod {
 
 		assertThat(Mongod.getMongodProcessId(consoleOutput, -1)).describedAs("PID").isEqualTo(11026);
 	}
+
+	@Test
+	public void testGetPIDFromJsonLog() {
+		String consoleOutput = "{\"t\":{\"$date\":\"2023-03-01T10:00:00.000+01:00\"},\"s\":\"I\",  \"c\":\"CONTROL\",  \"id\":4615611, \"ctx\":\"initandlisten\",\"msg\":\"MongoDB starting\",\"attr\":{\"pid\":11026,\"port\":27017}}\n";
+
+		assertThat(Mongod.getMongodProcessId(consoleOutput, -1)).describedAs("PID").isEqualTo(11026);
+	}
+
+	@Test
+	public void shutdownIsSentWhenServerClosesConnection() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			CompletableFuture<Void> closeAfterRead = CompletableFuture.runAsync(() -> {
+				try (Socket socket = server.accept()) {
+					socket.getInputStream().read(new byte[512]);
+				}
+				catch (IOException ix) {
+					throw new RuntimeException(ix);
+				}
+			});
+
+			assertThat(Mongod.sendShutdown(InetAddress.getLoopbackAddress(), server.getLocalPort(), true)).isTrue();
+			closeAfterRead.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void shutdownFailsOnErrorReply() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			CompletableFuture<Void> errorReply = CompletableFuture.runAsync(() -> {
+				try (Socket socket = server.accept()) {
+					socket.getInputStream().read(new byte[512]);
+					socket.getOutputStream().write(WireProtocol.opMsg(1, "admin", WireProtocol.document("ok", 0.0, "errmsg", "unauthorized")));
+					socket.getInputStream().read();
+				}
+				catch (IOException ix) {
+					throw new RuntimeException(ix);
+				}
+			});
+
+			assertThat(Mongod.sendShutdownCommand(InetAddress.getLoopbackAddress(), server.getLocalPort(), true))
+				.isEqualTo(Mongod.ShutdownResult.ERROR_REPLY);
+			errorReply.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void shutdownWithoutReplyIsNotTakenAsSent() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			CountDownLatch done = new CountDownLatch(1);
+			CompletableFuture<Void> noReply = CompletableFuture.runAsync(() -> {
+				try (Socket socket = server.accept()) {
+					socket.getInputStream().read(new byte[512]);
+					done.await(10, TimeUnit.SECONDS);
+				}
+				catch (IOException | InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+
+			assertThat(Mongod.sendShutdownCommand(InetAddress.getLoopbackAddress(), server.getLocalPort(), true))
+				.isEqualTo(Mongod.ShutdownResult.NO_REPLY);
+			done.countDown();
+			noReply.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void shutdownFailsIfNobodyIsListening() throws Exception {
+		int port;
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = server.getLocalPort();
+		}
+		assertThat(Mongod.sendShutdownCommand(InetAddress.getLoopbackAddress(), port, false))
+			.isEqualTo(Mongod.ShutdownResult.NOT_SENT);
+	}
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WireProtocolTest {
+
+	@Test
+	void encodeAndDecodeDocument() {
+		Map<String, Object> document = WireProtocol.document(
+			"isMaster", 1,
+			"name", "test",
+			"pid", 12345678901L,
+			"ok", 1.0,
+			"flag", true,
+			"nothing", null,
+			"nested", WireProtocol.document("a", 2),
+			"list", Arrays.asList("x", "y")
+		);
+
+		byte[] bytes = WireProtocol.encode(document);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+		assertThat(buffer.getInt(0)).isEqualTo(bytes.length);
+		assertThat(WireProtocol.decode(buffer))
+			.containsExactlyEntriesOf(document);
+		assertThat(buffer.remaining()).isEqualTo(0);
+	}
+
+	@Test
+	void nestedDocumentsNeedStringKeys() {
+		Map<Object, Object> nested = new HashMap<>();
+		nested.put(1, "a");
+
+		assertThatThrownBy(() -> WireProtocol.encode(WireProtocol.document("nested", nested)))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("document keys must be strings");
+	}
+
+	@Test
+	void opQueryMessageLayout() {
+		byte[] message = WireProtocol.opQuery(7, "admin.$cmd", WireProtocol.document("isMaster", 1));
+		ByteBuffer buffer = ByteBuffer.wrap(message).order(ByteOrder.LITTLE_ENDIAN);
+
+		assertThat(buffer.getInt()).isEqualTo(message.length);
+		assertThat(buffer.getInt()).isEqualTo(7);
+		assertThat(buffer.getInt()).isEqualTo(0);
+		assertThat(buffer.getInt()).isEqualTo(WireProtocol.OP_QUERY);
+		assertThat(buffer.getInt()).isEqualTo(0);
+	}
+
+	@Test
+	void opMsgAddsDatabase() throws IOException {
+		byte[] message = WireProtocol.opMsg(8, "admin", WireProtocol.document("shutdown", 1));
+
+		Map<String, Object> reply = WireProtocol.readReply(new ByteArrayInputStream(message));
+		assertThat(reply).containsExactly(
+			entry("shutdown", 1),
+			entry("$db", "admin")
+		);
+	}
+
+	@Test
+	void readOpReply() throws IOException {
+		byte[] document = WireProtocol.encode(WireProtocol.document("ok", 1.0, "maxWireVersion", 6));
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		ByteBuffer header = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(36 + document.length).putInt(1).putInt(7).putInt(WireProtocol.OP_REPLY)
+			.putInt(0).putLong(0L).putInt(0).putInt(1);
+		message.write(header.array(), 0, 36);
+		message.write(document, 0, document.length);
+
+		Map<String, Object> reply = WireProtocol.readReply(new ByteArrayInputStream(message.toByteArray()));
+
+		assertThat(WireProtocol.isOk(reply)).isTrue();
+		assertThat(WireProtocol.supportsOpMsg(reply)).isTrue();
+		assertThat(WireProtocol.supportsOpMsg(WireProtocol.document("maxWireVersion", 5))).isFalse();
+	}
+
+	@Test
+	void opMsgSupportDependsOnVersion() {
+		assertThat(WireProtocol.supportsOpMsg(Version.Main.V3_4)).isFalse();
+		assertThat(WireProtocol.supportsOpMsg(Version.Main.V3_6)).isTrue();
+		assertThat(WireProtocol.supportsOpMsg(Version.Main.V7_0)).isTrue();
+	}
+
+	@Test
+	void runCommandAgainstEchoServer() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			CompletableFuture<Void> echo = CompletableFuture.runAsync(() -> {
+				try (Socket socket = server.accept()) {
+					DataInputStream input = new DataInputStream(socket.getInputStream());
+					byte[] lengthBytes = new byte[4];
+					input.readFully(lengthBytes);
+					int length = ByteBuffer.wrap(lengthBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+					byte[] rest = new byte[length - 4];
+					input.readFully(rest);
+					socket.getOutputStream().write(lengthBytes);
+					socket.getOutputStream().write(rest);
+				}
+				catch (IOException ix) {
+					throw new RuntimeException(ix);
+				}
+			});
+
+			Map<String, Object> reply = WireProtocol.runCommand(InetAddress.getLoopbackAddress(), server.getLocalPort(), 1000, true, "admin",
+				WireProtocol.document("ping", 1));
+
+			echo.get(5, TimeUnit.SECONDS);
+			assertThat(reply).containsEntry("ping", 1).containsEntry("$db", "admin");
+		}
+	}
+
+	private static Map.Entry<String, Object> entry(String key, Object value) {
+		return new java.util.AbstractMap.SimpleImmutableEntry<>(key, value);
+	}
+}
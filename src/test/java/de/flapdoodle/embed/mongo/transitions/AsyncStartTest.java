@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Start;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncStartTest {
+
+	@Test
+	public void stateIsReachedOnExecutor() {
+		List<String> tearDowns = new ArrayList<>();
+		Transitions transitions = Transitions.from(Start.to(String.class).with(() -> State.of("started", tearDowns::add)));
+
+		CompletableFuture<TransitionWalker.ReachedState<String>> future = AsyncStart.start(
+			() -> transitions.walker().initState(StateID.of(String.class)), Runnable::run);
+
+		try (TransitionWalker.ReachedState<String> state = future.join()) {
+			assertThat(state.current()).isEqualTo("started");
+		}
+		assertThat(tearDowns).containsExactly("started");
+	}
+
+	@Test
+	public void stateIsClosedIfFutureIsCancelledWhileStarting() {
+		List<String> tearDowns = new ArrayList<>();
+		Transitions transitions = Transitions.from(Start.to(String.class).with(() -> State.of("started", tearDowns::add)));
+
+		AtomicReference<CompletableFuture<TransitionWalker.ReachedState<String>>> futureRef = new AtomicReference<>();
+		List<Runnable> scheduled = new ArrayList<>();
+
+		futureRef.set(AsyncStart.start(() -> {
+			futureRef.get().cancel(false);
+			return transitions.walker().initState(StateID.of(String.class));
+		}, scheduled::add));
+
+		scheduled.forEach(Runnable::run);
+
+		assertThat(futureRef.get()).isCancelled();
+		assertThat(tearDowns).containsExactly("started");
+	}
+
+	@Test
+	public void startIsSkippedIfFutureIsCancelledBefore() {
+		List<Runnable> scheduled = new ArrayList<>();
+		CompletableFuture<TransitionWalker.ReachedState<String>> future = AsyncStart.start(() -> {
+			throw new IllegalStateException("should not be called");
+		}, scheduled::add);
+
+		future.cancel(false);
+		scheduled.forEach(Runnable::run);
+
+		assertThat(future).isCancelled();
+	}
+
+	@Test
+	public void failureIsPassedToFuture() {
+		CompletableFuture<TransitionWalker.ReachedState<String>> future = AsyncStart.start(() -> {
+			throw new IllegalArgumentException("failed");
+		}, Runnable::run);
+
+		assertThatThrownBy(future::join)
+			.isInstanceOf(CompletionException.class)
+			.hasCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void errorIsPassedToFuture() {
+		CompletableFuture<TransitionWalker.ReachedState<String>> future = AsyncStart.start(() -> {
+			throw new NoClassDefFoundError("failed");
+		}, Runnable::run);
+
+		assertThatThrownBy(future::join)
+			.isInstanceOf(CompletionException.class)
+			.hasCauseInstanceOf(NoClassDefFoundError.class);
+	}
+}
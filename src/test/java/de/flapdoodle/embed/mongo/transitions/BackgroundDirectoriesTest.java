@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.types.DatabaseDir;
+import de.flapdoodle.reverse.State;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackgroundDirectoriesTest {
+
+	@Test
+	void moveDirectoryToTrashOnTearDown(@TempDir Path tempDir) throws IOException, InterruptedException {
+		State<DatabaseDir> state = BackgroundDirectories.deleteInBackgroundOnTearDown(
+			base -> {
+				try {
+					Path dir = base.createDirectory("db");
+					Files.createDirectory(dir.resolve("sub"));
+					Files.write(dir.resolve("sub").resolve("file"), new byte[] { 1, 2, 3 });
+					return dir;
+				}
+				catch (IOException iox) {
+					throw new RuntimeException(iox);
+				}
+			},
+			DatabaseDir::of
+		).apply(de.flapdoodle.embed.process.io.directories.TempDir.of(tempDir));
+
+		Path dir = state.value().value();
+		assertThat(dir).isDirectory();
+
+		State.tearDown(state);
+
+		assertThat(dir).doesNotExist();
+		Path trash = BackgroundDirectories.trashOf(de.flapdoodle.embed.process.io.directories.TempDir.of(tempDir));
+		assertThat(trash.getParent()).isEqualTo(tempDir.resolve(BackgroundDirectories.TRASH));
+		awaitEmpty(trash);
+		assertThat(trash).isEmptyDirectory();
+	}
+
+	@Test
+	void sweepLeftoversOnFirstUse(@TempDir Path tempDir) throws IOException, InterruptedException {
+		Path trash = Files.createDirectory(tempDir.resolve(BackgroundDirectories.TRASH));
+		Path leftover = Files.createDirectory(trash.resolve("crashed-run"));
+		Files.write(leftover.resolve("file"), new byte[] { 1 });
+
+		Path dir = Files.createDirectory(tempDir.resolve("working-dir"));
+		BackgroundDirectories.delete(de.flapdoodle.embed.process.io.directories.TempDir.of(tempDir), dir);
+
+		assertThat(dir).doesNotExist();
+		awaitDeleted(leftover);
+		assertThat(leftover).doesNotExist();
+	}
+
+	@Test
+	void keepTrashOfOtherRunningProcess(@TempDir Path tempDir) throws IOException {
+		Path trash = Files.createDirectory(tempDir.resolve(BackgroundDirectories.TRASH));
+		Path inFlight = Files.createDirectory(trash.resolve("other-process"));
+		Files.write(inFlight.resolve("file"), new byte[] { 1 });
+
+		try (FileChannel channel = FileChannel.open(trash.resolve("other-process.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock ignore = channel.lock()) {
+
+			Path dir = Files.createDirectory(tempDir.resolve("working-dir"));
+			BackgroundDirectories.delete(de.flapdoodle.embed.process.io.directories.TempDir.of(tempDir), dir);
+
+			assertThat(dir).doesNotExist();
+			assertThat(inFlight.resolve("file")).exists();
+		}
+	}
+
+	@Test
+	void deleteInlineIfReaperIsShutDown() {
+		ExecutorService reaper = Executors.newSingleThreadExecutor();
+		reaper.shutdown();
+
+		AtomicReference<Thread> executedBy = new AtomicReference<>();
+		BackgroundDirectories.execute(reaper, () -> executedBy.set(Thread.currentThread()));
+
+		assertThat(executedBy.get()).isSameAs(Thread.currentThread());
+	}
+
+	private static void awaitDeleted(Path path) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline && Files.exists(path)) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static void awaitEmpty(Path dir) throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			try (Stream<Path> content = Files.list(dir)) {
+				if (!content.findAny().isPresent()) {
+					return;
+				}
+			}
+			Thread.sleep(10);
+		}
+	}
+}
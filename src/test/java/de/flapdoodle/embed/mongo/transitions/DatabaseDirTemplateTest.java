@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseDirTemplateTest {
+
+	@Test
+	public void templateIsPopulatedOnlyOnce(@TempDir Path tempDir) {
+		AtomicInteger populated = new AtomicInteger();
+
+		DatabaseDirTemplate template = DatabaseDirTemplate.of("fixture", running -> {
+			populated.incrementAndGet();
+			try (MongoClient client = MongoClients.create("mongodb://" + running.getServerAddress())) {
+				client.getDatabase("test").getCollection("col").insertOne(new Document("fixture", true));
+			}
+		});
+
+		Mongod mongod = Mongod.instance()
+			.withPersistentBaseDir(Start.to(PersistentDir.class).initializedWith(PersistentDir.of(tempDir)))
+			.withDatabaseDir(template);
+
+		for (int i = 0; i < 2; i++) {
+			try (TransitionWalker.ReachedState<RunningMongodProcess> running = mongod.start(Version.Main.PRODUCTION)) {
+				try (MongoClient client = MongoClients.create("mongodb://" + running.current().getServerAddress())) {
+					assertThat(client.getDatabase("test").getCollection("col").countDocuments()).isEqualTo(1L);
+				}
+			}
+		}
+
+		assertThat(populated.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void fingerprintIsPartOfTheTemplateDir(@TempDir Path tempDir) {
+		PersistentDir persistentDir = PersistentDir.of(tempDir);
+
+		Path first = DatabaseDirTemplate.templateDir(persistentDir, Version.Main.PRODUCTION, "fixture", "v1");
+
+		assertThat(DatabaseDirTemplate.templateDir(persistentDir, Version.Main.PRODUCTION, "fixture", "v1")).isEqualTo(first);
+		assertThat(DatabaseDirTemplate.templateDir(persistentDir, Version.Main.PRODUCTION, "fixture", "v2")).isNotEqualTo(first);
+		assertThat(DatabaseDirTemplate.templateDir(persistentDir, Version.Main.PRODUCTION, "fixture", "../v1").getParent())
+			.isEqualTo(first.getParent());
+	}
+}
@@ -40,8 +40,11 @@ import de.flapdoodle.types.Try;
 import org.bson.Document;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import static de.flapdoodle.embed.mongo.ServerAddressMapping.serverAddress;
@@ -71,14 +74,37 @@ class MongoImportTest {
 			}));
 	}
 
+	@Test
+	public void importFromInputStream() throws IOException {
+		InputStream json = Resources.getResource("sample.json").openStream();
+
+		runImport(Version.Main.PRODUCTION, importJson(null), MongoImport.instance().transitions(Version.Main.PRODUCTION, ProcessInput.of(json)),
+			onTestCollection(col -> assertThat(col.countDocuments()).isEqualTo(0)),
+			onTestCollection(col -> {
+				ArrayList<Object> names = Lists.newArrayList(col.find().map(doc -> doc.get("name")));
+
+				assertThat(names).containsExactlyInAnyOrder("Cassandra","HBase","MongoDB");
+			}));
+	}
+
+	private static void runImport(
+		Version.Main version,
+		MongoImportArguments mongoImportArguments,
+		Consumer<ServerAddress> beforeImport,
+		Consumer<ServerAddress> afterImport
+	) throws UnknownHostException {
+		runImport(version, mongoImportArguments, MongoImport.instance().transitions(version), beforeImport, afterImport);
+	}
+
 	private static void runImport(
 		Version.Main version,
 		MongoImportArguments mongoImportArguments,
+		Transitions mongoImportTransitions,
 		Consumer<ServerAddress> beforeImport,
 		Consumer<ServerAddress> afterImport
 	) throws UnknownHostException {
 
-		Transitions transitions = MongoImport.instance().transitions(version)
+		Transitions transitions = mongoImportTransitions
 			.replace(Start.to(MongoImportArguments.class).initializedWith(mongoImportArguments))
 			.addAll(Derive.given(RunningMongodProcess.class).state(ServerAddress.class)
 				.deriveBy(Try.function(RunningMongodProcess::getServerAddress).mapToUncheckedException(RuntimeException::new)))
@@ -113,7 +139,7 @@ class MongoImportTest {
 			.upsertDocuments(true)
 			.dropCollection(true)
 			.isJsonArray(true)
-			.importFile(jsonFile)
+			.importFile(Optional.ofNullable(jsonFile))
 			.build();
 	}
 
@@ -212,6 +212,40 @@ class MongoRestoreTest {
 		}
 	}
 
+	@Test
+	public void pipeArchiveFromOneInstanceIntoAnother() {
+		Version.Main version = Version.Main.PRODUCTION;
+		String name = UUID.randomUUID().toString();
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> source = Mongod.instance().start(version);
+			TransitionWalker.ReachedState<RunningMongodProcess> target = Mongod.instance().start(version)) {
+
+			onTestCollection(col -> col.insertOne(new Document("name", name))).accept(source.current().getServerAddress());
+
+			try (TransitionWalker.ReachedState<RunningMongoDumpArchive> dump = MongoDump.instance().transitions(version)
+				.replace(Start.to(MongoDumpArguments.class).initializedWith(MongoDumpArguments.builder()
+					.databaseName("testdb")
+					.archiveToStdout(true)
+					.build()))
+				.addAll(Start.to(ServerAddress.class).initializedWith(source.current().getServerAddress()))
+				.walker()
+				.initState(StateID.of(RunningMongoDumpArchive.class))) {
+
+				try (TransitionWalker.ReachedState<ExecutedMongoRestoreProcess> restore = MongoRestore.instance()
+					.transitions(version, dump.current().asProcessInput())
+					.addAll(Start.to(ServerAddress.class).initializedWith(target.current().getServerAddress()))
+					.walker()
+					.initState(StateID.of(ExecutedMongoRestoreProcess.class))) {
+
+					assertThat(restore.current().returnCode()).isEqualTo(0);
+				}
+			}
+
+			onTestCollection(col -> assertThat(col.find().map(doc -> doc.getString("name")).first()).isEqualTo(name))
+				.accept(target.current().getServerAddress());
+		}
+	}
+
 	private static void dumpAndRestore(
 		Version.Main version,
 		MongoDumpArguments mongoDumpArguments,
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.client.ClientActions;
+import de.flapdoodle.embed.mongo.client.SyncClientAdapter;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MongodPoolTest {
+
+	@Test
+	public void resetInstanceIsReused() {
+		MongodPool pool = MongodPool.of(Mongod.instance(), Version.Main.PRODUCTION, 1)
+			.withReset(ClientActions.dropDatabases(new SyncClientAdapter(MongoClientSettings.builder().build())));
+
+		try (RunningMongodPool running = pool.start()) {
+			ServerAddress first;
+			try (RunningMongodPool.Lease lease = running.lease()) {
+				first = lease.current().getServerAddress();
+				try (MongoClient client = MongoClients.create("mongodb://" + first)) {
+					client.getDatabase("test").getCollection("col").insertOne(new Document("a", 1));
+				}
+			}
+
+			try (RunningMongodPool.Lease lease = running.lease()) {
+				assertThat(lease.current().getServerAddress()).isEqualTo(first);
+				try (MongoClient client = MongoClients.create("mongodb://" + first)) {
+					List<String> names = client.listDatabaseNames().into(new ArrayList<>());
+					assertThat(names).doesNotContain("test");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void instanceWithoutResetIsReplaced() {
+		try (RunningMongodPool running = MongodPool.of(Mongod.instance(), Version.Main.PRODUCTION, 1).start()) {
+			RunningMongodProcess first;
+			try (RunningMongodPool.Lease lease = running.lease()) {
+				first = lease.current();
+			}
+
+			try (RunningMongodPool.Lease lease = running.lease()) {
+				assertThat(lease.current()).isNotSameAs(first);
+				assertThat(first.isAlive()).isFalse();
+			}
+		}
+	}
+
+	@Test
+	public void closeFailsWaitingLeasesAndDoesNotRestartFailedInstances() throws InterruptedException {
+		AtomicInteger starts = new AtomicInteger();
+		CountDownLatch startCalled = new CountDownLatch(1);
+		CountDownLatch failStart = new CountDownLatch(1);
+		RunningMongodPool running = new RunningMongodPool(() -> {
+			starts.incrementAndGet();
+			startCalled.countDown();
+			try {
+				failStart.await();
+			}
+			catch (InterruptedException ix) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalStateException("start failed");
+		}, Optional.empty(), 1);
+
+		// one lease waits for the only instance, the other one for a free slot
+		CompletableFuture<RunningMongodPool.Lease> first = CompletableFuture.supplyAsync(running::lease);
+		CompletableFuture<RunningMongodPool.Lease> second = CompletableFuture.supplyAsync(running::lease);
+		startCalled.await();
+
+		running.close();
+		failStart.countDown();
+
+		List<Throwable> failures = new ArrayList<>();
+		for (CompletableFuture<RunningMongodPool.Lease> lease : Arrays.asList(first, second)) {
+			assertThatThrownBy(() -> lease.get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.satisfies(ex -> failures.add(ex.getCause()));
+		}
+		assertThat(failures)
+			.anySatisfy(ex -> assertThat(ex).isInstanceOf(IllegalStateException.class).hasMessage("pool already closed"))
+			.allSatisfy(ex -> assertThat(ex.getMessage()).isIn("pool already closed", "could not start mongod"));
+		assertThat(starts).hasValue(1);
+		assertThatThrownBy(running::lease)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("pool already closed");
+	}
+}
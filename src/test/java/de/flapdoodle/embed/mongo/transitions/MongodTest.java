@@ -289,6 +289,35 @@ class MongodTest {
 		}
 	}
 
+	@Test
+	public void startMongodWithWireProtocolReadinessCheck() {
+		Mongod mongod = Mongod.instance()
+			.withMongodStarter(MongodStarter.withDefaults()
+				.withReadinessCheck(ReadinessCheck.WIRE_PROTOCOL));
+
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = mongod.start(Version.Main.PRODUCTION)) {
+			ServerAddress serverAddress = serverAddress(running.current().getServerAddress());
+			try (MongoClient mongo = MongoClients.create("mongodb://" + serverAddress)) {
+				MongoDatabase db = mongo.getDatabase("test");
+				MongoCollection<Document> col = db.getCollection("testCol");
+				col.insertOne(new Document("testDoc", new Date()));
+				assertThat(col.countDocuments()).isEqualTo(1L);
+			}
+		}
+	}
+
+	@Test
+	public void throwawayMongodIsKilledOnTearDown() {
+		Mongod mongod = Mongod.instance().withThrowaway(true);
+
+		RunningMongodProcess process;
+		try (TransitionWalker.ReachedState<RunningMongodProcess> running = mongod.start(Version.Main.PRODUCTION)) {
+			process = running.current();
+			assertThat(process.isAlive()).isTrue();
+		}
+		assertThat(process.isAlive()).isFalse();
+	}
+
 	@Test
 	public void startMongodOnNonFreePort() {
 		Net net = Net.defaults();
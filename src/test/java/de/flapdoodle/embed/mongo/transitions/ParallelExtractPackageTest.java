@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.archives.ExtractedFileSet;
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelExtractPackageTest {
+
+	@Test
+	void extractsOnlyRequestedEntriesAndReusesThemForOtherPackages(@TempDir Path tempDir) throws IOException {
+		Path archive = tgz(tempDir.resolve("tools.tgz"), "tools/bin/mongoimport", "tools/bin/mongodump", "tools/README");
+		Path directory = ParallelExtractPackage.extractionDir(PersistentDir.of(tempDir), archive);
+
+		ExtractedFileSet mongoImport = ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, FileSet.builder()
+			.addEntry(FileType.Executable, "mongoimport")
+			.build(), 4);
+
+		assertThat(mongoImport.executable()).hasContent("tools/bin/mongoimport");
+		assertThat(mongoImport.executable().toFile().canExecute()).isTrue();
+		assertThat(directory.resolve("files").resolve("tools").resolve("README")).doesNotExist();
+		assertThat(ParallelExtractPackage.readManifest(directory)).hasSize(1);
+
+		FileTime extractedAt = Files.getLastModifiedTime(mongoImport.executable());
+
+		ExtractedFileSet mongoDump = ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, FileSet.builder()
+			.addEntry(FileType.Executable, "mongodump")
+			.addEntry(FileType.Library, "README", ".*README")
+			.build(), 4);
+
+		assertThat(mongoDump.executable()).hasContent("tools/bin/mongodump");
+		assertThat(mongoDump.libraryFiles()).hasSize(1);
+		assertThat(ParallelExtractPackage.readManifest(directory)).hasSize(3);
+
+		ExtractedFileSet mongoImportAgain = ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, FileSet.builder()
+			.addEntry(FileType.Executable, "mongoimport")
+			.build(), 4);
+
+		assertThat(mongoImportAgain.executable()).isEqualTo(mongoImport.executable());
+		assertThat(Files.getLastModifiedTime(mongoImportAgain.executable())).isEqualTo(extractedAt);
+	}
+
+	@Test
+	void missingFilesAreExtractedAgain(@TempDir Path tempDir) throws IOException {
+		Path archive = tgz(tempDir.resolve("tools.tgz"), "bin/mongoimport");
+		Path directory = ParallelExtractPackage.extractionDir(PersistentDir.of(tempDir), archive);
+		FileSet fileSet = FileSet.builder().addEntry(FileType.Executable, "mongoimport").build();
+
+		ExtractedFileSet extracted = ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, fileSet, 2);
+		Files.delete(extracted.executable());
+
+		Properties manifest = ParallelExtractPackage.readManifest(directory);
+		assertThat(manifest).isEmpty();
+		assertThat(ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, fileSet, 2).executable())
+			.hasContent("bin/mongoimport");
+	}
+
+	@Test
+	void failsIfEntryIsNotInArchive(@TempDir Path tempDir) throws IOException {
+		Path archive = tgz(tempDir.resolve("tools.tgz"), "bin/mongoimport");
+		Path directory = ParallelExtractPackage.extractionDir(PersistentDir.of(tempDir), archive);
+
+		assertThatThrownBy(() -> ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, FileSet.builder()
+			.addEntry(FileType.Executable, "mongorestore")
+			.build(), 2))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("entries not found");
+	}
+
+	@Test
+	void largeEntriesAreStreamedToDisk(@TempDir Path tempDir) throws IOException {
+		Path archive = tempDir.resolve("server.tgz");
+		int size = 10 * 1024 * 1024;
+		try (OutputStream output = Files.newOutputStream(archive);
+			TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(output))) {
+			TarArchiveEntry entry = new TarArchiveEntry("bin/mongod");
+			entry.setSize(size);
+			tar.putArchiveEntry(entry);
+			tar.write(new byte[size]);
+			tar.closeArchiveEntry();
+		}
+		Path directory = ParallelExtractPackage.extractionDir(PersistentDir.of(tempDir), archive);
+
+		ExtractedFileSet extracted = ParallelExtractPackage.extract(directory, archive, ArchiveType.TGZ, FileSet.builder()
+			.addEntry(FileType.Executable, "mongod")
+			.build(), 2);
+
+		assertThat(extracted.executable()).hasSize(size);
+		assertThat(extracted.executable().toFile().canExecute()).isTrue();
+	}
+
+	private static Path tgz(Path archive, String... names) throws IOException {
+		try (OutputStream output = Files.newOutputStream(archive);
+			TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(output))) {
+			for (String name : names) {
+				byte[] content = name.getBytes(StandardCharsets.UTF_8);
+				TarArchiveEntry entry = new TarArchiveEntry(name);
+				entry.setSize(content.length);
+				tar.putArchiveEntry(entry);
+				tar.write(content);
+				tar.closeArchiveEntry();
+			}
+		}
+		return archive;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.reverse.State;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Join;
+import de.flapdoodle.reverse.transitions.Start;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelWalkerTest {
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void independentTransitionsRunConcurrently() {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+
+		Transitions transitions = Transitions.from(
+			Start.to(String.class).providedBy(() -> awaitOther(bothStarted, "a")),
+			Start.to(Integer.class).providedBy(() -> awaitOther(bothStarted, 1)),
+			Join.given(String.class).and(Integer.class).state(StringBuilder.class)
+				.deriveBy((s, i) -> new StringBuilder(s).append(i))
+		);
+
+		try (TransitionWalker.ReachedState<StringBuilder> result = ParallelWalker.of(transitions, executor)
+			.initState(StateID.of(StringBuilder.class))) {
+			assertThat(result.current().toString()).isEqualTo("a1");
+		}
+	}
+
+	@Test
+	public void tearDownInReverseOrder() {
+		List<String> tearDowns = Collections.synchronizedList(new ArrayList<>());
+
+		Transitions transitions = Transitions.from(
+			Start.to(String.class).with(() -> State.of("a", tearDowns::add)),
+			Start.to(Integer.class).with(() -> State.of(1, it -> tearDowns.add("" + it))),
+			Join.given(String.class).and(Integer.class).state(StringBuilder.class)
+				.with((s, i) -> State.of(new StringBuilder(s).append(i), it -> tearDowns.add(it.toString())))
+		);
+
+		try (TransitionWalker.ReachedState<StringBuilder> ignore = ParallelWalker.of(transitions, executor)
+			.initState(StateID.of(StringBuilder.class))) {
+			assertThat(tearDowns).isEmpty();
+		}
+
+		assertThat(tearDowns).hasSize(3);
+		assertThat(tearDowns.get(0)).isEqualTo("a1");
+		assertThat(tearDowns.subList(1, 3)).containsExactlyInAnyOrder("a", "1");
+	}
+
+	@Test
+	public void failureTearsDownResolvedStates() {
+		List<String> tearDowns = Collections.synchronizedList(new ArrayList<>());
+
+		Transitions transitions = Transitions.from(
+			Start.to(String.class).with(() -> State.of("a", tearDowns::add)),
+			Start.to(Integer.class).providedBy(() -> {
+				throw new IllegalArgumentException("failed");
+			}),
+			Join.given(String.class).and(Integer.class).state(StringBuilder.class)
+				.deriveBy((s, i) -> new StringBuilder(s).append(i))
+		);
+
+		assertThatThrownBy(() -> ParallelWalker.of(transitions, executor).initState(StateID.of(StringBuilder.class)))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("failed");
+
+		assertThat(tearDowns).containsExactly("a");
+	}
+
+	private static <T> T awaitOther(CountDownLatch latch, T value) {
+		latch.countDown();
+		try {
+			assertThat(latch.await(10, TimeUnit.SECONDS))
+				.describedAs("other transition did not run concurrently")
+				.isTrue();
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PortAllocatorTest {
+
+	@Test
+	void reservedPortsAreDistinctUntilReleased(@TempDir Path tempDir) throws IOException {
+		InetAddress host = de.flapdoodle.net.Net.getLocalHost();
+		PersistentDir persistentDir = PersistentDir.of(tempDir);
+
+		try (PortAllocator.Reservation first = PortAllocator.reserve(persistentDir, host);
+			PortAllocator.Reservation second = PortAllocator.reserve(persistentDir, host)) {
+
+			assertThat(first.port()).isNotEqualTo(second.port());
+			assertThat(first.port()).isBetween(PortAllocator.FIRST_PORT, PortAllocator.LAST_PORT);
+			assertThat(tempDir.resolve("ports").resolve(first.port() + ".lock")).exists();
+
+			try (ServerSocket socket = new ServerSocket(first.port(), 1, host)) {
+				assertThat(socket.getLocalPort()).isEqualTo(first.port());
+			}
+		}
+	}
+
+	@Test
+	void portLockedByAnotherProcessIsSkipped(@TempDir Path tempDir) throws IOException {
+		InetAddress host = de.flapdoodle.net.Net.getLocalHost();
+		Path lockDir = Files.createDirectory(tempDir.resolve("ports"));
+		int port;
+		try (PortAllocator.Reservation reservation = PortAllocator.reserve(PersistentDir.of(tempDir), host)) {
+			port = reservation.port();
+		}
+
+		try (FileChannel channel = FileChannel.open(lockDir.resolve(port + ".lock"), StandardOpenOption.WRITE);
+			FileLock ignore = channel.lock()) {
+			assertThat(PortAllocator.tryReserve(lockDir, host, port)).isEmpty();
+		}
+
+		PortAllocator.Reservation again = PortAllocator.tryReserve(lockDir, host, port)
+			.orElseThrow(() -> new AssertionError("port " + port + " not free after unlock"));
+		again.close();
+	}
+
+	@Test
+	void portInUseIsSkipped(@TempDir Path tempDir) throws IOException {
+		InetAddress host = de.flapdoodle.net.Net.getLocalHost();
+		Path lockDir = Files.createDirectory(tempDir.resolve("ports"));
+
+		try (ServerSocket socket = new ServerSocket(0, 1, host)) {
+			assertThat(PortAllocator.tryReserve(lockDir, host, socket.getLocalPort())).isEmpty();
+		}
+	}
+
+	@Test
+	void replacementPortUsesLockDirOfReservation(@TempDir Path tempDir) throws IOException {
+		InetAddress host = de.flapdoodle.net.Net.getLocalHost();
+
+		try (PortAllocator.Reservation first = PortAllocator.reserve(PersistentDir.of(tempDir), host);
+			PortAllocator.Reservation second = PortAllocator.reserveInsteadOf(first.port(), host)) {
+
+			assertThat(second.port()).isNotEqualTo(first.port());
+			assertThat(tempDir.resolve("ports").resolve(second.port() + ".lock")).exists();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Derive;
+import de.flapdoodle.reverse.transitions.Start;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PortConflictRetryTest {
+
+	@Test
+	void startAgainWithNewNetIfAllocatedPortIsInUse() {
+		AtomicInteger nextPort = new AtomicInteger(20000);
+		List<Integer> ports = new ArrayList<>();
+		Transitions transitions = Transitions.from(
+			Start.to(Net.class).providedBy(() -> Net.defaults().withReassignablePort(nextPort.getAndIncrement())),
+			Derive.given(Net.class).state(String.class).deriveBy(net -> {
+				ports.add(net.getPort());
+				if (ports.size() < 3) {
+					throw new RuntimeException("bind failed: " + RunningMongoProcess.ADDRESS_ALREADY_IN_USE);
+				}
+				return "listening on " + net.getPort();
+			}));
+
+		try (TransitionWalker.ReachedState<String> started = PortConflictRetry.start(listener -> transitions.walker()
+			.initState(StateID.of(String.class), listener), Collections.emptyList(), 3)) {
+			assertThat(started.current()).isEqualTo("listening on 20002");
+		}
+		assertThat(ports).containsExactly(20000, 20001, 20002);
+	}
+
+	@Test
+	void fixedPortIsNotChanged() {
+		AtomicInteger attempts = new AtomicInteger();
+		Transitions transitions = Transitions.from(
+			Start.to(Net.class).initializedWith(Net.defaults(27017)),
+			Derive.given(Net.class).state(String.class).deriveBy(net -> {
+				attempts.incrementAndGet();
+				throw new RuntimeException("bind failed: " + RunningMongoProcess.ADDRESS_ALREADY_IN_USE);
+			}));
+
+		assertThatThrownBy(() -> PortConflictRetry.start(listener -> transitions.walker()
+			.initState(StateID.of(String.class), listener), Collections.emptyList(), 3))
+			.hasRootCauseMessage("bind failed: " + RunningMongoProcess.ADDRESS_ALREADY_IN_USE);
+		assertThat(attempts).hasValue(1);
+	}
+}
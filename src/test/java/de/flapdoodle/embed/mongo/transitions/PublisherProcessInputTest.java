@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PublisherProcessInputTest {
+
+	@Test
+	void requestsOnlyBufferedChunksAhead() throws IOException {
+		AtomicLong maxOutstanding = new AtomicLong();
+		AtomicBoolean cancelCalled = new AtomicBoolean();
+		Publisher<ByteBuffer> publisher = chunks(100, maxOutstanding, cancelCalled);
+
+		ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+		PublisherProcessInput.of(publisher, 4).writeTo(stdin);
+
+		assertThat(stdin.toString("UTF-8")).hasSize(100 * 6).startsWith("chunk\nchunk\n");
+		assertThat(maxOutstanding.get()).isLessThanOrEqualTo(4);
+		assertThat(cancelCalled).isFalse();
+	}
+
+	@Test
+	void cancelsPublisherIfStdinIsClosed() {
+		AtomicLong maxOutstanding = new AtomicLong();
+		AtomicBoolean cancelCalled = new AtomicBoolean();
+		Publisher<ByteBuffer> publisher = chunks(100, maxOutstanding, cancelCalled);
+
+		OutputStream closed = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		assertThatThrownBy(() -> PublisherProcessInput.of(publisher).writeTo(closed))
+			.isInstanceOf(IOException.class)
+			.hasMessage("Broken pipe");
+		assertThat(cancelCalled).isTrue();
+	}
+
+	private static Publisher<ByteBuffer> chunks(int count, AtomicLong maxOutstanding, AtomicBoolean cancelCalled) {
+		return subscriber -> subscriber.onSubscribe(new Subscription() {
+			private long outstanding;
+			private int sent;
+			private boolean cancelled;
+
+			@Override
+			public synchronized void request(long n) {
+				outstanding += n;
+				maxOutstanding.accumulateAndGet(outstanding, Math::max);
+				while (!cancelled && outstanding > 0 && sent < count) {
+					outstanding--;
+					sent++;
+					subscriber.onNext(ByteBuffer.wrap("chunk\n".getBytes(StandardCharsets.UTF_8)));
+				}
+				if (!cancelled && sent == count) {
+					cancelled = true;
+					subscriber.onComplete();
+				}
+			}
+
+			@Override
+			public synchronized void cancel() {
+				cancelCalled.set(true);
+				cancelled = true;
+			}
+		});
+	}
+}
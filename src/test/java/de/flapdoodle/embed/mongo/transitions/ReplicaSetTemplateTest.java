@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaSetTemplateTest {
+
+	@Test
+	public void eachStartFromTemplateIsPrimaryAndSupportsTransactions() {
+		ReplicaSetTemplate template = ReplicaSetTemplate.of(Storage.of("template-rs", 0));
+
+		for (int i = 0; i < 2; i++) {
+			try (TransitionWalker.ReachedState<RunningMongodProcess> running = template.start(Version.Main.PRODUCTION)) {
+				try (MongoClient client = MongoClients.create("mongodb://" + running.current().getServerAddress() + "/?replicaSet=template-rs")) {
+					MongoCollection<Document> collection = client.getDatabase("test").getCollection("col");
+					collection.insertOne(new Document("setup", true));
+
+					try (ClientSession session = client.startSession()) {
+						session.withTransaction(() -> collection.insertOne(session, new Document("a", 1)));
+					}
+
+					assertThat(collection.countDocuments()).isEqualTo(2L);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.reverse.StateID;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicaSetTest {
+
+	@Test
+	public void startReplicaSetWithThreeMembers() {
+		try (TransitionWalker.ReachedState<RunningReplicaSet> running = ReplicaSet.of(Mongod.instance(), Version.Main.PRODUCTION, 3).start()) {
+			RunningReplicaSet replicaSet = running.current();
+			assertThat(replicaSet.memberAddresses()).hasSize(3).doesNotHaveDuplicates();
+			assertThat(replicaSet.primary()).isPresent();
+
+			try (MongoClient client = MongoClients.create(replicaSet.connectionString())) {
+				client.getDatabase("test").getCollection("col").insertOne(new Document("a", 1));
+				assertThat(client.getDatabase("test").getCollection("col").countDocuments()).isEqualTo(1L);
+			}
+		}
+	}
+
+	@Test
+	public void eachMemberIsAState() {
+		Transitions transitions = ReplicaSet.of(Mongod.instance(), Version.Main.PRODUCTION, 3).transitions();
+
+		assertThat(transitions.transitions().stream().<StateID<?>>map(Transition::destination))
+			.containsExactlyInAnyOrder(ReplicaSet.member(0), ReplicaSet.member(1), ReplicaSet.member(2),
+				StateID.of(RunningReplicaSet.class));
+	}
+
+	@Test
+	public void replicaSetNeedsAtLeastOneMember() {
+		assertThatThrownBy(() -> ReplicaSet.of(Mongod.instance(), Version.Main.PRODUCTION, 0))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("members");
+	}
+
+	@Test
+	public void membersWithFixedNetGetDifferentPorts() {
+		Set<Integer> usedPorts = ConcurrentHashMap.newKeySet();
+		Transitions transitions = Transitions.from(ReplicaSet.netWithUniquePorts(
+			Start.to(Net.class).initializedWith(Net.of("127.0.0.1", 27117, false)), usedPorts));
+
+		try (TransitionWalker.ReachedState<Net> first = transitions.walker().initState(StateID.of(Net.class));
+			TransitionWalker.ReachedState<Net> second = transitions.walker().initState(StateID.of(Net.class))) {
+
+			assertThat(first.current().getPort()).isEqualTo(27117);
+			assertThat(first.current().isPortReassignable()).isFalse();
+			assertThat(second.current().getPort()).isNotEqualTo(27117);
+			assertThat(second.current().getBindIp()).contains("127.0.0.1");
+			assertThat(usedPorts).containsExactlyInAnyOrder(27117, second.current().getPort());
+		}
+		assertThat(usedPorts).isEmpty();
+	}
+}
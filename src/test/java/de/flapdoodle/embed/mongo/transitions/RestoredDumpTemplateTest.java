@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongoRestoreArguments;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.io.directories.PersistentDir;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.Transitions;
+import de.flapdoodle.reverse.transitions.Start;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RestoredDumpTemplateTest {
+
+	@Test
+	public void hashDependsOnContentAndRestoreArguments(@TempDir Path tempDir) throws IOException {
+		Path dump = Files.createDirectories(tempDir.resolve("dump").resolve("db"));
+		Files.write(dump.resolve("col.bson"), "a".getBytes(StandardCharsets.UTF_8));
+
+		String hash = RestoredDumpTemplate.of(dump.getParent()).hash();
+
+		assertThat(RestoredDumpTemplate.of(dump.getParent()).hash()).isEqualTo(hash);
+		assertThat(RestoredDumpTemplate.of(dump.getParent())
+			.withRestoreArguments(MongoRestoreArguments.defaults().withDropCollection(true)).hash())
+			.isNotEqualTo(hash);
+
+		Files.write(dump.resolve("col.bson"), "b".getBytes(StandardCharsets.UTF_8));
+		assertThat(RestoredDumpTemplate.of(dump.getParent()).hash()).isNotEqualTo(hash);
+	}
+
+	@Test
+	public void contentIsHashedAgainOnlyIfAFileDidChange(@TempDir Path tempDir) throws IOException {
+		Path dump = Files.createDirectories(tempDir.resolve("dump").resolve("db"));
+		Path file = dump.resolve("col.bson");
+		Files.write(file, "a".getBytes(StandardCharsets.UTF_8));
+		FileTime lastModified = Files.getLastModifiedTime(file);
+
+		String hash = RestoredDumpTemplate.of(dump.getParent()).hash();
+
+		// same size and modification time: the cached content hash is used
+		Files.write(file, "b".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, lastModified);
+		assertThat(RestoredDumpTemplate.of(dump.getParent()).hash()).isEqualTo(hash);
+
+		Files.write(dump.resolve("other.bson"), "c".getBytes(StandardCharsets.UTF_8));
+		assertThat(RestoredDumpTemplate.of(dump.getParent()).hash()).isNotEqualTo(hash);
+	}
+
+	@Test
+	public void restoreOnlyOnceAndStartFromClone(@TempDir Path tempDir) {
+		Path dump = Paths.get(Thread.currentThread().getContextClassLoader().getResource("dump").getFile());
+		AtomicInteger restoreRuns = new AtomicInteger();
+
+		for (int i = 0; i < 2; i++) {
+			// a new template each time, the restored database dir must be found by its hash
+			RestoredDumpTemplate template = RestoredDumpTemplate.builder()
+				.dump(dump)
+				.mongod(Mongod.instance()
+					.withPersistentBaseDir(Start.to(PersistentDir.class).initializedWith(PersistentDir.of(tempDir))))
+				.mongoRestore(new MongoRestore() {
+					@Override
+					public Transitions transitions(de.flapdoodle.embed.process.distribution.Version version) {
+						restoreRuns.incrementAndGet();
+						return super.transitions(version);
+					}
+				})
+				.build();
+
+			try (TransitionWalker.ReachedState<RunningMongodProcess> running = template.start(Version.Main.PRODUCTION)) {
+				try (MongoClient client = MongoClients.create("mongodb://" + running.current().getServerAddress())) {
+					assertThat(client.getDatabase("restoredb").getCollection("sample").countDocuments()).isEqualTo(3L);
+				}
+			}
+		}
+
+		assertThat(restoreRuns).hasValue(1);
+		assertThat(tempDir.resolve("databaseTemplates")).isDirectory();
+	}
+}
@@ -20,11 +20,23 @@
  */
 package de.flapdoodle.embed.mongo.transitions;
 
-import de.flapdoodle.embed.process.io.SuccessMessageLineListener;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.process.config.SupportConfig;
+import de.flapdoodle.embed.process.io.ProcessOutput;
+import de.flapdoodle.embed.process.runtime.ProcessControl;
+import de.flapdoodle.os.CommonOS;
+import de.flapdoodle.os.Platform;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class RunningMongoProcessTest {
 
@@ -41,7 +53,7 @@ class RunningMongoProcessTest {
 		"the code execution cannot proceed because SSLEAY32.dll was not found. Reinstalling may fix this problem."
 	})
 	void acceptKnownErrorMessages(String message) {
-		SuccessMessageLineListener testeePart = RunningMongoProcess.errorMessageAwareLogWatch();
+		StartupLogWatch testeePart = RunningMongoProcess.errorMessageAwareLogWatch();
 		testeePart.inspect(message);
 		assertThat(testeePart.successMessageFound()).isFalse();
 		assertThat(testeePart.errorMessage())
@@ -56,8 +68,24 @@ class RunningMongoProcessTest {
 		"Waiting for connections"
 	})
 	void acceptSuccessMessage(String message) {
-		SuccessMessageLineListener testeePart = RunningMongoProcess.errorMessageAwareLogWatch();
+		StartupLogWatch testeePart = RunningMongoProcess.errorMessageAwareLogWatch();
 		testeePart.inspect(message);
 		assertThat(testeePart.successMessageFound()).isTrue();
 	}
-}
\ No newline at end of file
+
+	@Test
+	@EnabledOnOs({ OS.LINUX, OS.MAC })
+	void failFastIfProcessExitsWithoutKnownMessage() throws IOException {
+		ProcessControl process = ProcessControl.fromCommandLine(SupportConfig.generic(),
+			Arrays.asList("sh", "-c", "echo 'something unexpected'; exit 3"), false);
+
+		long start = System.currentTimeMillis();
+		assertThatThrownBy(() -> RunningMongodProcess.factory(30000L, SupportConfig.generic(), Platform.detect(CommonOS.list()), Net.defaults())
+			.startedWith(process, ProcessOutput.silent(), null, 1000L))
+			.isInstanceOf(RuntimeException.class)
+			.hasMessageContaining("process exited")
+			.hasMessageContaining("something unexpected");
+
+		assertThat(System.currentTimeMillis() - start).isLessThan(10000L);
+	}
+}
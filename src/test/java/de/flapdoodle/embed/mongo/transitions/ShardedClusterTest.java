@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedClusterTest {
+
+	@Test
+	public void startClusterWithTwoShards() {
+		ShardedCluster cluster = ShardedCluster.of(Version.Main.PRODUCTION)
+			.withShards(2)
+			.withShardedDatabases("test");
+
+		try (RunningShardedCluster running = cluster.start()) {
+			assertThat(running.shards()).hasSize(2);
+
+			try (MongoClient client = MongoClients.create(running.connectionString())) {
+				Document shards = client.getDatabase("admin").runCommand(new Document("listShards", 1));
+				assertThat(shards.getList("shards", Document.class)).hasSize(2);
+
+				client.getDatabase("test").getCollection("col").insertOne(new Document("a", 1));
+				assertThat(client.getDatabase("test").getCollection("col").countDocuments()).isEqualTo(1L);
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.transitions;
+
+import de.flapdoodle.embed.process.io.StreamProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupLogWatchTest {
+
+	@Test
+	void splitBlocksIntoLines() {
+		StartupLogWatch testee = StartupLogWatch.of(Arrays.asList("aiting for connections"), Collections.emptyList(), "error");
+		StringBuilder passedThrough = new StringBuilder();
+		StreamProcessor processor = testee.listeningTo(collectInto(passedThrough));
+
+		processor.process("MongoDB starting : pi");
+		processor.process("d=11026 port=12345\nWaiting for ");
+		assertThat(testee.successMessageFound()).isFalse();
+		processor.process("connections\n");
+
+		assertThat(testee.successMessageFound()).isTrue();
+		assertThat(testee.processId()).isEqualTo(11026);
+		assertThat(testee.allLines()).isEqualTo("MongoDB starting : pid=11026 port=12345\nWaiting for connections\n");
+		assertThat(passedThrough.toString()).isEqualTo("MongoDB starting : pid=11026 port=12345\nWaiting for connections\n");
+	}
+
+	@Test
+	void keepOnlyLastLines() {
+		StartupLogWatch testee = StartupLogWatch.of(Collections.emptyList(), Collections.emptyList(), "error", 2);
+		testee.inspect("one");
+		testee.inspect("two");
+		testee.inspect("three");
+
+		assertThat(testee.allLines()).isEqualTo("two\nthree\n");
+	}
+
+	@Test
+	void passThroughAfterDetach() {
+		StartupLogWatch testee = StartupLogWatch.of(Collections.emptyList(), Arrays.asList("(?<error>Address already in use)"), "error");
+		StringBuilder passedThrough = new StringBuilder();
+		StreamProcessor processor = testee.listeningTo(collectInto(passedThrough));
+
+		processor.process("started\n");
+		testee.detach();
+		processor.process("Address already in use\n");
+		processor.onProcessed();
+
+		assertThat(testee.isDetached()).isTrue();
+		assertThat(testee.errorMessage()).isEmpty();
+		assertThat(testee.allLines()).isEqualTo("started\n");
+		assertThat(passedThrough.toString()).isEqualTo("started\nAddress already in use\n");
+	}
+
+	@Test
+	void waitForResultReturnsAfterTimeout() {
+		StartupLogWatch testee = StartupLogWatch.of(Arrays.asList("never"), Collections.emptyList(), "error");
+		long start = System.currentTimeMillis();
+		testee.waitForResult(50);
+
+		assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(50);
+		assertThat(testee.successMessageFound()).isFalse();
+	}
+
+	@Test
+	void stopWaitingIfProcessIsGone() {
+		StartupLogWatch testee = StartupLogWatch.of(Arrays.asList("never"), Collections.emptyList(), "error");
+		testee.listeningTo(collectInto(new StringBuilder()));
+		long start = System.currentTimeMillis();
+		testee.waitForResult(30000, () -> false);
+
+		assertThat(System.currentTimeMillis() - start).isLessThan(StartupLogWatch.EXIT_GRACE_PERIOD_IN_MS + 1000);
+		assertThat(testee.processExited()).isTrue();
+	}
+
+	@Test
+	void stopWaitingIfAllStreamsAreClosed() {
+		StartupLogWatch testee = StartupLogWatch.of(Arrays.asList("never"), Collections.emptyList(), "error");
+		StreamProcessor output = testee.listeningTo(collectInto(new StringBuilder()));
+		StreamProcessor error = testee.listeningTo(collectInto(new StringBuilder()));
+
+		output.process("crash\n");
+		output.onProcessed();
+		error.onProcessed();
+
+		long start = System.currentTimeMillis();
+		testee.waitForResult(30000, () -> true);
+
+		assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+		assertThat(testee.processExited()).isTrue();
+		assertThat(testee.allLines()).isEqualTo("crash\n");
+	}
+
+	private static StreamProcessor collectInto(StringBuilder sb) {
+		return new StreamProcessor() {
+			@Override
+			public void process(String block) {
+				sb.append(block);
+			}
+
+			@Override
+			public void onProcessed() {
+			}
+		};
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BackoffTest {
+
+	@Test
+	void pollsUntilResultIsPresent() {
+		AtomicInteger checks = new AtomicInteger();
+
+		Optional<String> result = Backoff.between(1, 4)
+			.await(() -> checks.incrementAndGet() == 5 ? Optional.of("ready") : Optional.empty(), 5000);
+
+		assertThat(result).contains("ready");
+		assertThat(checks).hasValue(5);
+	}
+
+	@Test
+	void emptyOnTimeout() {
+		long started = System.currentTimeMillis();
+
+		Optional<String> result = Backoff.between(1, 10).await(Optional::empty, 50);
+
+		assertThat(result).isEmpty();
+		assertThat(System.currentTimeMillis() - started).isGreaterThanOrEqualTo(50);
+	}
+
+	@Test
+	void stopIfNotWaitingAnymore() {
+		List<String> checks = new ArrayList<>();
+
+		Optional<String> result = Backoff.between(1, 1)
+			.await(() -> checks.size() < 3, () -> {
+				checks.add("check");
+				return Optional.empty();
+			}, 5000);
+
+		assertThat(result).isEmpty();
+		assertThat(checks).hasSize(3);
+	}
+
+	@Test
+	void emptyAndInterruptFlagSetIfInterrupted() {
+		Thread.currentThread().interrupt();
+		try {
+			assertThat(Backoff.between(1, 10).await(Optional::empty, 5000)).isEmpty();
+			assertThat(Thread.currentThread().isInterrupted()).isTrue();
+		}
+		finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	void minMustNotBeGreaterThanMax() {
+		assertThatThrownBy(() -> Backoff.between(10, 5))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+}
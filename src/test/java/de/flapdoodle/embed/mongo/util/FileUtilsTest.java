@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileUtilsTest {
+
+	@Test
+	public void cloneDirectoryCopiesAllFilesAndDirectories(@TempDir Path tempDir) throws IOException {
+		Path source = Files.createDirectory(tempDir.resolve("source"));
+		Files.write(source.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(source.resolve("sub").resolve("empty"));
+		Files.write(source.resolve("sub").resolve("b.txt"), "b".getBytes(StandardCharsets.UTF_8));
+
+		Path target = Files.createDirectory(tempDir.resolve("target"));
+		FileUtils.cloneDirectory(source, target);
+
+		assertThat(target.resolve("a.txt")).hasContent("a");
+		assertThat(target.resolve("sub").resolve("b.txt")).hasContent("b");
+		assertThat(target.resolve("sub").resolve("empty")).isEmptyDirectory();
+	}
+
+	@Test
+	public void clonedFilesAreIndependentOfSource(@TempDir Path tempDir) throws IOException {
+		Path source = Files.createDirectory(tempDir.resolve("source"));
+		Files.write(source.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+
+		Path target = Files.createDirectory(tempDir.resolve("target"));
+		FileUtils.cloneDirectory(source, target);
+		Files.write(target.resolve("a.txt"), "changed".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(source.resolve("a.txt")).hasContent("a");
+	}
+}